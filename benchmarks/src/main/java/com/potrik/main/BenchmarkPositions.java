@@ -0,0 +1,46 @@
+package com.potrik.main;
+
+/**
+ * BenchmarkPositions.java
+ *
+ * The standard position set of the benchmarks, an opening, three middlegames and an endgame.
+ * The positions are referred to by name in the benchmark parameters.
+ */
+final class BenchmarkPositions {
+    /*
+     * The names of the positions, and the positions in the same order
+     */
+    static final String[] NAMES = {"start", "kiwipete", "queens_gambit", "closed", "endgame"};
+    static final String[] FENS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8",
+            "2rq1rk1/pb1nbppp/1p2pn2/2pp4/2PP4/1PN1PN2/PB2BPPP/R2Q1RK1 w - - 0 11",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+    };
+
+    private BenchmarkPositions() {
+    }
+
+    /**
+     * Get the position with the given name
+     *
+     * @param name the name of the position
+     * @return the position as a fen string
+     */
+    static String get(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) return FENS[i];
+        }
+        throw new IllegalArgumentException("Unknown position: " + name);
+    }
+
+    /**
+     * Create a searcher with its own position for the benchmarks, the search output is off by default
+     *
+     * @return the searcher
+     */
+    static Searcher createSearcher() {
+        return new Searcher(new Position());
+    }
+}
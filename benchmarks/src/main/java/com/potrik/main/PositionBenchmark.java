@@ -0,0 +1,126 @@
+package com.potrik.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PositionBenchmark.java
+ *
+ * Benchmarks of the board operations the search spends its time in: the move generators, making and reverting
+ * moves, attack detection, the static evaluation, fen parsing and perft. Each benchmark runs on one position of the
+ * standard set, and the position is the same before and after every invocation.
+ * The copyMake parameter compares reverting the moves from the history arrays with copy-make.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionBenchmark {
+    @Param({"start", "kiwipete", "queens_gambit", "closed", "endgame"})
+    public String position;
+
+    @Param({"false", "true"})
+    public boolean copyMake;
+
+    @Param({"3"})
+    public int perftDepth;
+
+    private Searcher searcher;
+    private Position board;
+    private String fen;
+
+    /*
+     * The pseudo legal moves of the position, and all the squares of the board base 120
+     */
+    private int[] moves;
+    private int[] squares;
+
+    @Setup
+    public void setup() {
+        searcher = BenchmarkPositions.createSearcher();
+        board = searcher.getPosition();
+        fen = BenchmarkPositions.get(position);
+        board.parseFen(fen);
+        board.setCopyMake(copyMake);
+        searcher.generateMoves();
+        moves = searcher.copyMoveList();
+
+        squares = new int[64];
+        for (int sq = 0; sq < 64; sq++) {
+            squares[sq] = 21 + sq % 8 + 10 * (sq / 8);
+        }
+    }
+
+    @Benchmark
+    public void generateMoves() {
+        searcher.generateMoves();
+    }
+
+    @Benchmark
+    public void generateCaptureMoves() {
+        searcher.generateCaptureMoves();
+    }
+
+    /**
+     * Make and revert every legal move of the position, the way the search does: the pseudo legal moves are
+     * tested with isLegal, and the legal ones are made with playMove and reverted
+     *
+     * @return the number of legal moves
+     */
+    @Benchmark
+    public int makeRevertMoves() {
+        int legal = 0;
+        board.updatePins();
+        for (int move : moves) {
+            if (board.isLegal(move)) {
+                board.playMove(move);
+                board.revertMove();
+                legal++;
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * Check every square of the board for attacks by both sides
+     *
+     * @return the number of attacked squares
+     */
+    @Benchmark
+    public int isAttacked() {
+        int attacked = 0;
+        for (int sq : squares) {
+            if (board.isAttacked(sq, 0)) attacked++;
+            if (board.isAttacked(sq, 1)) attacked++;
+        }
+        return attacked;
+    }
+
+    @Benchmark
+    public int evaluatePosition() {
+        return searcher.evaluatePosition();
+    }
+
+    @Benchmark
+    public void parseFen() {
+        board.parseFen(fen);
+    }
+
+    @Benchmark
+    public long perft() {
+        return searcher.perft(perftDepth);
+    }
+}
@@ -0,0 +1,61 @@
+package com.potrik.main;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SearchBenchmark.java
+ *
+ * Benchmark of a fixed depth search of the whole standard position set with one thread.
+ * The transposition table, the pawn hash table and the evaluation cache are cleared before each position,
+ * so every invocation searches the same tree.
+ * The search is measured both with the moves reverted from the history arrays and with copy-make.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"8"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean copyMake;
+
+    private Searcher searcher;
+
+    @Setup
+    public void setup() {
+        searcher = BenchmarkPositions.createSearcher();
+        searcher.getPosition().setCopyMake(copyMake);
+    }
+
+    /**
+     * Search every position of the set to the depth
+     *
+     * @return the sum of the best moves, so that the searches can not be left out
+     */
+    @Benchmark
+    public int searchPositions() {
+        int sum = 0;
+        for (String fen : BenchmarkPositions.FENS) {
+            searcher.getPosition().parseFen(fen);
+            searcher.clearTables();
+            sum += searcher.searchPosition(1, depth);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,365 @@
+package com.potrik.main;
+
+/**
+ * Bitboards.java
+ *
+ * Precomputed attack tables for the bitboard move generation and attack detection.
+ * A bitboard is a 64 bit long where bit n is set if square n (base 64, a1 = 0, h8 = 63) is in the set.
+ * Sliding piece attacks are looked up with fancy magic bitboards: the occupied squares that can block
+ * a slider on a square are masked out, multiplied by a magic number, and the top bits of the product
+ * are used as the index into the attack table of that square.
+ */
+final class Bitboards {
+    /*
+     * The attack tables for the knight and king indexed by square number base 64
+     */
+    static final long[] knightAttacks = new long[64];
+    static final long[] kingAttacks = new long[64];
+
+    /*
+     * The squares attacked by a pawn, index = side * 64 + square number base 64
+     */
+    static final long[] pawnAttacks = new long[2 * 64];
+
+    /*
+     * The squares strictly between two squares on the same rank, file or diagonal, 0 if they are not aligned.
+     * index = square 1 * 64 + square 2, both base 64
+     */
+    static final long[] between = new long[64 * 64];
+
+    /*
+     * The whole line through two squares on the same rank, file or diagonal, from edge to edge of the board,
+     * 0 if they are not aligned. index = square 1 * 64 + square 2, both base 64
+     */
+    static final long[] line = new long[64 * 64];
+
+    /*
+     * The squares of each file, and the squares of the files next to each file, indexed by file (0 - 7)
+     */
+    static final long[] fileMasks = new long[8];
+    static final long[] adjacentFileMasks = new long[8];
+
+    /*
+     * The squares in front of a pawn on its own file and the files next to it, that must be free of enemy pawns
+     * for the pawn to be passed. index = side * 64 + square number base 64
+     */
+    static final long[] passedMasks = new long[2 * 64];
+
+    /*
+     * The squares on the files next to a pawn, on its own rank and behind it, where an own pawn can support it.
+     * index = side * 64 + square number base 64
+     */
+    static final long[] supportMasks = new long[2 * 64];
+
+    /*
+     * The two ranks in front of a king, on its own file and the files next to it, where pawns shield the king.
+     * index = side * 64 + square number base 64
+     */
+    static final long[] shieldMasks = new long[2 * 64];
+
+    /*
+     * The relevant occupancy masks of the sliding pieces indexed by square number base 64.
+     * These are the squares that can block the slider, which does not include the edge of the board
+     * because a piece on the edge does not block anything behind it.
+     */
+    private static final long[] rookMasks = new long[64];
+    private static final long[] bishopMasks = new long[64];
+
+    /*
+     * The shift of the magic product, 64 - the number of bits in the mask, indexed by square number base 64
+     */
+    private static final int[] rookShifts = new int[64];
+    private static final int[] bishopShifts = new int[64];
+
+    /*
+     * The start index of each square in the shared attack tables indexed by square number base 64
+     */
+    private static final int[] rookOffsets = new int[64];
+    private static final int[] bishopOffsets = new int[64];
+
+    /*
+     * The attack tables of the sliding pieces, all the squares share one table for each piece type
+     */
+    private static final long[] rookTable = new long[102400];
+    private static final long[] bishopTable = new long[5248];
+
+    /*
+     * The magic numbers for the sliding pieces indexed by square number base 64.
+     * These were found by a random trial search, and map every relevant occupancy of the square to
+     * an index in the attack table without any destructive collisions.
+     */
+    private static final long[] rookMagics = {
+            0x0480053081214000L, 0x0040100040002001L, 0x6080200080100008L, 0x0200082004411200L,
+            0x0200102008040200L, 0x1100240028210012L, 0x1080008001000200L, 0x0100020028488100L,
+            0x0001800220400086L, 0x2488804000802004L, 0x0C00801000200081L, 0x201C801000080080L,
+            0x0441000800100500L, 0x00A0808002000400L, 0x0125000402000100L, 0x0001002200409100L,
+            0x0280004020004000L, 0x5110084020004000L, 0x0001050020024011L, 0x0002020020081040L,
+            0x0800050008010010L, 0x81C0808002000400L, 0x8010808001000200L, 0x000006000100408CL,
+            0x0280400080008020L, 0x3000500040002000L, 0x8400200080801000L, 0x80A01001000D0020L,
+            0x900C001101000800L, 0x0110040080800200L, 0x1001000100040200L, 0x0060040200008041L,
+            0x4480804000800038L, 0x0040002001804080L, 0x2010882000801000L, 0x0000080282801000L,
+            0x0200080080800400L, 0x0206000400808002L, 0x2000020001010004L, 0x1014042042000091L,
+            0x0200208040008000L, 0x0040201000404002L, 0x0244200100110041L, 0x0041019000090020L,
+            0x0A28001100850008L, 0x0020020004008080L, 0x1001220108140010L, 0x8A0400408106000CL,
+            0x0000220100508200L, 0x6040048049003100L, 0x0000200011024300L, 0x0000900100082500L,
+            0x0870040008008080L, 0x0850800600040180L, 0x0006008104480200L, 0x1800040108B04200L,
+            0xD12C201080010341L, 0x0101042040008013L, 0x2801004008200273L, 0x001900614C500009L,
+            0x0202004461500802L, 0x0002001008040102L, 0x10001028B1080604L, 0x000D000040803201L
+    };
+    private static final long[] bishopMagics = {
+            0x6460220208002480L, 0x8308C80104002010L, 0xB408121042008000L, 0x0C48205040021000L,
+            0x1002021000020000L, 0x0840882440802010L, 0x0080809008204040L, 0x00001402011028A0L,
+            0x088EC002040400B0L, 0x0005500608087180L, 0x0000A20089020010L, 0x000010908602C060L,
+            0x2810420210014000L, 0x0040024802400080L, 0x0408484230100840L, 0x00020A08A4011800L,
+            0x0020003062062848L, 0x0002504510440102L, 0xA23005310C008810L, 0x0048000104110044L,
+            0x010A000422010008L, 0x2021000200A0A400L, 0x0004400208124801L, 0x8000280480841000L,
+            0x8110100206600229L, 0x0814204102080909L, 0x00A0300002040840L, 0x8808080000202020L,
+            0x04040400C0410040L, 0x108404200C101400L, 0x01C1012000480802L, 0xA020520040420200L,
+            0x2404100800062001L, 0x0002014400208804L, 0x0100805000410402L, 0x0241420080080080L,
+            0x8040040444030100L, 0x0F50064242020110L, 0x0001020200888818L, 0x0801021200018069L,
+            0x2803086094A01040L, 0x2440482804444800L, 0x0002002024200804L, 0x880101420800C084L,
+            0x40A4182008200900L, 0x8420008102041040L, 0x00901001304A0508L, 0x0450021448519100L,
+            0x0402021002080A10L, 0x000D01009084020CL, 0x20800A0046480040L, 0x0000083020880220L,
+            0x0001010803040142L, 0x0000081001520000L, 0x0040100420809000L, 0x0022900428808202L,
+            0x0000404044202010L, 0x1008004044108804L, 0x1008305509415000L, 0x1000840400208840L,
+            0x0810260A12020201L, 0x3000A04410020210L, 0x0903102082008204L, 0x490808088808C308L
+    };
+
+    /*
+     * The directions of the pieces as rank and file steps
+     */
+    private static final int[][] dirKn = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+    private static final int[][] dirKi = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] dirRk = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] dirBi = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    static {
+        initStepAttacks();
+        initLines();
+        initPawnMasks();
+        initSliderAttacks(rookMasks, rookShifts, rookOffsets, rookTable, rookMagics, dirRk);
+        initSliderAttacks(bishopMasks, bishopShifts, bishopOffsets, bishopTable, bishopMagics, dirBi);
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * Get the squares attacked by a rook
+     *
+     * @param sq the square of the rook base 64
+     * @param occupied the occupied squares
+     * @return the attacked squares, including the first blocking piece in every direction
+     */
+    static long rookAttacks(int sq, long occupied) {
+        return rookTable[rookOffsets[sq] + (int) (((occupied & rookMasks[sq]) * rookMagics[sq]) >>> rookShifts[sq])];
+    }
+
+    /**
+     * Get the squares attacked by a bishop
+     *
+     * @param sq the square of the bishop base 64
+     * @param occupied the occupied squares
+     * @return the attacked squares, including the first blocking piece in every direction
+     */
+    static long bishopAttacks(int sq, long occupied) {
+        return bishopTable[bishopOffsets[sq] + (int) (((occupied & bishopMasks[sq]) * bishopMagics[sq]) >>> bishopShifts[sq])];
+    }
+
+    /**
+     * Get the squares attacked by a queen
+     *
+     * @param sq the square of the queen base 64
+     * @param occupied the occupied squares
+     * @return the attacked squares, including the first blocking piece in every direction
+     */
+    static long queenAttacks(int sq, long occupied) {
+        return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+    }
+
+    /**
+     * Check if a rank and file is on the board
+     *
+     * @param rank the rank (0 - 7)
+     * @param file the file (0 - 7)
+     * @return boolean if the square is on the board
+     */
+    private static boolean onBoard(int rank, int file) {
+        return rank >= 0 && rank < 8 && file >= 0 && file < 8;
+    }
+
+    /**
+     * Init the attack tables for the knight, king and pawns
+     */
+    private static void initStepAttacks() {
+        for (int sq = 0; sq < 64; sq++) {
+            int rank = sq / 8;
+            int file = sq % 8;
+            for (int[] dir : dirKn) {
+                if (onBoard(rank + dir[0], file + dir[1])) knightAttacks[sq] |= 1L << ((rank + dir[0]) * 8 + file + dir[1]);
+            }
+            for (int[] dir : dirKi) {
+                if (onBoard(rank + dir[0], file + dir[1])) kingAttacks[sq] |= 1L << ((rank + dir[0]) * 8 + file + dir[1]);
+            }
+
+            /*
+             * White pawns attack up the board and black pawns down the board
+             */
+            for (int df = -1; df <= 1; df += 2) {
+                if (onBoard(rank + 1, file + df)) pawnAttacks[sq] |= 1L << ((rank + 1) * 8 + file + df);
+                if (onBoard(rank - 1, file + df)) pawnAttacks[64 + sq] |= 1L << ((rank - 1) * 8 + file + df);
+            }
+        }
+    }
+
+    /**
+     * Init the between and line tables, by walking each of the eight directions from every square
+     */
+    private static void initLines() {
+        for (int sq = 0; sq < 64; sq++) {
+            for (int[] dir : dirKi) {
+                /*
+                 * The full line through the square in this direction and the opposite one
+                 */
+                long full = (1L << sq) | walk(sq, dir[0], dir[1]) | walk(sq, -dir[0], -dir[1]);
+                long path = 0;
+                int rank = sq / 8 + dir[0];
+                int file = sq % 8 + dir[1];
+                while (onBoard(rank, file)) {
+                    int to = rank * 8 + file;
+                    between[sq * 64 + to] = path;
+                    line[sq * 64 + to] = full;
+                    path |= 1L << to;
+                    rank += dir[0];
+                    file += dir[1];
+                }
+            }
+        }
+    }
+
+    /**
+     * Init the file masks and the pawn structure masks
+     */
+    private static void initPawnMasks() {
+        for (int file = 0; file < 8; file++) {
+            fileMasks[file] = 0x0101010101010101L << file;
+        }
+        for (int file = 0; file < 8; file++) {
+            if (file > 0) adjacentFileMasks[file] |= fileMasks[file - 1];
+            if (file < 7) adjacentFileMasks[file] |= fileMasks[file + 1];
+        }
+
+        for (int sq = 0; sq < 64; sq++) {
+            int rank = sq / 8;
+            int file = sq % 8;
+            long files = fileMasks[file] | adjacentFileMasks[file];
+
+            /*
+             * The ranks in front of the square for white, and the ranks up to and including it,
+             * and the same for black looking down the board
+             */
+            long above = rank == 7 ? 0 : -1L << ((rank + 1) * 8);
+            long below = rank == 0 ? 0 : -1L >>> ((8 - rank) * 8);
+            long rankMask = 0xFFL << (rank * 8);
+            passedMasks[sq] = files & above;
+            passedMasks[64 + sq] = files & below;
+            supportMasks[sq] = adjacentFileMasks[file] & (below | rankMask);
+            supportMasks[64 + sq] = adjacentFileMasks[file] & (above | rankMask);
+
+            long front = rank < 7 ? 0xFFL << ((rank + 1) * 8) : 0;
+            if (rank < 6) front |= 0xFFL << ((rank + 2) * 8);
+            long back = rank > 0 ? 0xFFL << ((rank - 1) * 8) : 0;
+            if (rank > 1) back |= 0xFFL << ((rank - 2) * 8);
+            shieldMasks[sq] = files & front;
+            shieldMasks[64 + sq] = files & back;
+        }
+    }
+
+    /**
+     * Get the squares from a square to the edge of the board in a direction, not including the square itself
+     *
+     * @param sq the square base 64
+     * @param dr the rank direction
+     * @param df the file direction
+     * @return the squares
+     */
+    private static long walk(int sq, int dr, int df) {
+        long squares = 0;
+        int rank = sq / 8 + dr;
+        int file = sq % 8 + df;
+        while (onBoard(rank, file)) {
+            squares |= 1L << (rank * 8 + file);
+            rank += dr;
+            file += df;
+        }
+        return squares;
+    }
+
+    /**
+     * Calculate the squares attacked by a slider by walking each direction until it hits a piece
+     *
+     * @param sq the square of the slider base 64
+     * @param occupied the occupied squares
+     * @param dirs the directions of the slider
+     * @return the attacked squares
+     */
+    private static long slowSliderAttacks(int sq, long occupied, int[][] dirs) {
+        long attacks = 0;
+        for (int[] dir : dirs) {
+            int rank = sq / 8 + dir[0];
+            int file = sq % 8 + dir[1];
+            while (onBoard(rank, file)) {
+                long bit = 1L << (rank * 8 + file);
+                attacks |= bit;
+                if ((occupied & bit) != 0) break;
+                rank += dir[0];
+                file += dir[1];
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Init the masks, shifts, offsets and attack table of a slider
+     *
+     * @param masks the relevant occupancy masks to fill
+     * @param shifts the magic shifts to fill
+     * @param offsets the table offsets to fill
+     * @param table the attack table to fill
+     * @param magics the magic numbers
+     * @param dirs the directions of the slider
+     */
+    private static void initSliderAttacks(long[] masks, int[] shifts, int[] offsets, long[] table, long[] magics, int[][] dirs) {
+        int offset = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            /*
+             * The mask is the squares the slider can reach on an empty board, except the last square in each direction
+             */
+            long mask = 0;
+            for (int[] dir : dirs) {
+                int rank = sq / 8 + dir[0];
+                int file = sq % 8 + dir[1];
+                while (onBoard(rank + dir[0], file + dir[1])) {
+                    mask |= 1L << (rank * 8 + file);
+                    rank += dir[0];
+                    file += dir[1];
+                }
+            }
+            int bits = Long.bitCount(mask);
+            masks[sq] = mask;
+            shifts[sq] = 64 - bits;
+            offsets[sq] = offset;
+
+            /*
+             * Loop through all the subsets of the mask (Carry-Rippler), and store the attacks for each of them
+             */
+            long subset = 0;
+            do {
+                table[offset + (int) ((subset * magics[sq]) >>> shifts[sq])] = slowSliderAttacks(sq, subset, dirs);
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+
+            offset += 1 << bits;
+        }
+    }
+}
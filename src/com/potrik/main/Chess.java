@@ -10,56 +10,38 @@ import java.awt.event.WindowEvent;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.Random;
+import java.util.Arrays;
 import java.util.Scanner;
 
+import static com.potrik.main.Position.*;
+import static com.potrik.main.Searcher.*;
+
 /**
  * Chess.java
  *
  * Created by Erling Rorvik (Potrik) on 24.03.2016
  * Last updated on 09.04.2016
  */
-public class Chess extends Canvas {
-    /*
-     * GUI:
-     * The width and height of a tile
-     * The buffering level for rendering
-     * The window frame object
-     */
-    private final int width = 80;
-    private final int height = 80;
-    private static final int bufferingLevel = 3;
-    private JFrame frame;
-
-    /*
-     * The number of squares on the board (10 * 12)
-     */
-    private static final byte BOARD_SQUARES = 120;
-
-    /*
-     * The maximum number of half moves in a game
-     */
-    private static final int MAX_GAME_MOVES = 2048;
-
+public class Chess {
     /*
-     * The maximum number of possible moves in a position
+     * The default depth of the bench command
      */
-    private static final int MAX_POSITION_MOVES = 256;
+    private static final int BENCH_DEPTH = 8;
 
     /*
-     * The maximum number of depth to search
+     * The number of times the smpbench command searches the position set for each thread count
      */
-    private static final int MAX_DEPTH = 64;
+    private static final int SMP_BENCH_RUNS = 5;
 
     /*
-     * The number of primary variation entries in total for each position
+     * The depth of the tree the evalbench command evaluates the leaves of
      */
-    private static final int PV_ENTRIES = 10000;
+    private static final int EVAL_BENCH_DEPTH = 3;
 
     /*
-     * Static variable for infinity, as Integer.MAX_VALUE does not work as -MIN_VALUE = MIN_VALUE
+     * The maximum number of search threads
      */
-    private static final int INF = 2000000;
+    private static final int MAX_THREADS = 64;
 
     /*
      * Game Status
@@ -70,461 +52,11 @@ public class Chess extends Canvas {
     private static final String DRAW = "Draw";
 
     /*
-     * Colors
-     */
-    private static final byte WHITE = 0;
-    private static final byte BLACK = 1;
-    private static final byte NONE = 2;
-
-    /*
-     * Castle Permissions
-     * The castle permission is stored in a 4 bits 0000
-     * Where the last represents white king side castle (2^0)
-     * Second represents white queen side castle (2^1)
-     * Third represents black king side castle (2^2)
-     * Fourth represents black queen side castle (2^3)
-     */
-    private static final byte WKCA = 1;
-    private static final byte WQCA = 2;
-    private static final byte BKCA = 4;
-    private static final byte BQCA = 8;
-
-    /*
-     * Static enumeration of the pieces
-     */
-    private static final byte EMPTY = 0;
-    private static final byte wP = 1;
-    private static final byte wN = 2;
-    private static final byte wB = 3;
-    private static final byte wR = 4;
-    private static final byte wQ = 5;
-    private static final byte wK = 6;
-    private static final byte bP = 7;
-    private static final byte bN = 8;
-    private static final byte bB = 9;
-    private static final byte bR = 10;
-    private static final byte bQ = 11;
-    private static final byte bK = 12;
-
-    /*
-     * Squares values of some important squares
-     * The no square value (equivalent to null)
-     * The offboard value (square is not on the board)
-     */
-    private static final byte NO_SQ = 99;
-    private static final byte OFFBOARD = 100;
-
-    /*
-     * Quick Arrays for getting the file and rank of a square
-     */
-    private static final byte[] getFile = new byte[BOARD_SQUARES];
-    private static final byte[] getRank = new byte[BOARD_SQUARES];
-
-    /*
-     * Quick Arrays for converting between 64 base square (0 - 63) to 120 base square (0 - 120)
-     */
-    private static final byte[] getSquare64 = new byte[BOARD_SQUARES];
-    private static final byte[] getSquare120 = new byte[64];
-
-    /*
-     * Quick Array for mirroring the base 64 board squares from white to black, so that a1 -> a8 and f3 -> f6 etc.
-     */
-    private static final byte[] mirror64 = {
-            56, 57, 58, 59, 60, 61, 62, 63,
-            48, 49, 50, 51, 52, 53, 54, 55,
-            40, 41, 42, 43, 44, 45, 46, 47,
-            32, 33, 34, 35, 36, 37, 38, 39,
-            24, 25, 26, 27, 28, 29, 30, 31,
-            16, 17, 18, 19, 20, 21, 22, 23,
-            8, 9, 10, 11, 12, 13, 14, 15,
-            0, 1, 2, 3, 4, 5, 6, 7
-    };
-
-    /*
-     * Quick Arrays for checking a piece is of a type, regardless of color, saves the extra p == wP || p == bP.
-     * Indexed by the piece number
-     */
-    private static final boolean[] piecePawn = {false, true, false, false, false, false, false, true, false, false, false, false, false};
-    private static final boolean[] pieceKnight = {false, false, true, false, false, false, false, false, true, false, false, false, false};
-    private static final boolean[] pieceBishopQueen = {false, false, false, true, false, true, false, false, false, true, false, true, false};
-    private static final boolean[] pieceRookQueen = {false, false, false, false, true, true, false, false, false, false, true, true, false};
-    private static final boolean[] pieceKing = {false, false, false, false, false, false, true, false, false, false, false, false, true};
-
-    /*
-     * Quick Array for getting the piece number for the king indexed by side
-     */
-    private static final byte[] sidesKings = {wK, bK};
-
-    /*
-     * Quick Array for getting the color of a piece, indexed by piece number
-     */
-    private static final int[] colPieces = {NONE, WHITE, WHITE, WHITE, WHITE, WHITE, WHITE, BLACK, BLACK, BLACK, BLACK, BLACK, BLACK};
-
-    /*
-     * Array that defines if a piece is a sliding piece or not indexed by piece number
-     */
-    private static final boolean[] slidePiece = {false, false, false, true, true, true, false, false, false, true, true, true, false};
-
-    /*
-     * Array that defines the value of the pieces indexed by piece number
-     */
-    private static final int[] valPieces = {0, 100, 325, 325, 550, 1000, 50000, 100, 325, 325, 550, 1000, 50000};
-
-    /*
-     * Array that defines the character symbols of the pieces indexed by piece number
-     */
-    private static final char[] pieceChars = ".PNBRQKpnbrqk".toCharArray();
-
-    /*
-     * Array that defines the character symbols of the sides indexed by side
-     */
-    private static final char[] sideChar = "wb-".toCharArray();
-
-    /*
-     * CastlePermission Quick Array indexed by square number base 120
-     * Whenever a piece moves from or to a square, the castle permission &= castlePermSquare[squareNumber]
-     * So that if either a king or rook moves or is captured, then castling is no longer possible.
-     * Since castling permission is stored in 4 bits 1111 (all castling possible) & with for example 12 = 1100
-     * if the white king was moved, results in a castle permission 1100 for only black can castle.
-     */
-    private static final byte[] castlePermSquare = {
-            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
-            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
-            15, 13, 15, 15, 15, 12, 15, 15, 14, 15,
-            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
-            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
-            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
-            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
-            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
-            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
-            15, 7, 15, 15, 15, 3, 15, 15, 11, 15,
-            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
-            15, 15, 15, 15, 15, 15, 15, 15, 15, 15
-    };
-
-    /*
-     * The score tables for each piece, indexed by square number base 64
-     * These represent the value of each piece when it's located on a given square
-     */
-    private static final int[] pawnScoreTable = {
-            0, 0, 0, 0, 0, 0, 0, 0,
-            10, 10, 0, -10, -10, 0, 10, 10,
-            5, 0, 0, 5, 5, 0, 0, 5,
-            0, 0, 10, 20, 20, 10, 0, 0,
-            5, 5, 5, 10, 10, 5, 5, 5,
-            10, 10, 10, 20, 20, 10, 10, 10,
-            20, 20, 20, 30, 30, 20, 20, 20,
-            0, 0, 0, 0, 0, 0, 0, 0
-    };
-    private static final int[] knightScoreTable = {
-            0, -10, 0, 0, 0, 0, -10, 0,
-            0, 0, 0, 5, 5, 0, 0, 0,
-            0, 0, 10, 10, 10, 10, 0, 0,
-            0, 0, 10, 20, 20, 10, 5, 0,
-            5, 10, 15, 20, 20, 15, 10, 5,
-            5, 10, 10, 20, 20, 10, 10, 5,
-            0, 0, 5, 10, 10, 5, 0, 0,
-            0, 0, 0, 0, 0, 0, 0, 0
-    };
-    private static final int[] bishopScoreTable = {
-            0, 0, -10, 0, 0, -10, 0, 0,
-            0, 0, 0, 10, 10, 0, 0, 0,
-            0, 0, 10, 15, 15, 10, 0, 0,
-            0, 10, 15, 20, 20, 15, 10, 0,
-            0, 10, 15, 20, 20, 15, 10, 0,
-            0, 0, 10, 15, 15, 10, 0, 0,
-            0, 0, 0, 10, 10, 0, 0, 0,
-            0, 0, 0, 0, 0, 0, 0, 0
-    };
-    private static final int[] rookScoreTable = {
-            0, 0, 5, 10, 10, 5, 0, 0,
-            0, 0, 5, 10, 10, 5, 0, 0,
-            0, 0, 5, 10, 10, 5, 0, 0,
-            0, 0, 5, 10, 10, 5, 0, 0,
-            0, 0, 5, 10, 10, 5, 0, 0,
-            0, 0, 5, 10, 10, 5, 0, 0,
-            25, 25, 25, 25, 25, 25, 25, 25,
-            0, 0, 5, 10, 10, 5, 0, 0
-    };
-    private static final int[] queenScoreTable = {
-            0, 0, 0, -10, 0, 0, 0, 0,
-            0, 0, 5, 5, 5, 0, 0, 0,
-            0, 10, 2, 5, 5, 8, 0, 0,
-            10, 0, 5, 10, 10, 5, 10, 0,
-            0, 0, 5, 10, 10, 5, 0, 10,
-            0, 0, 3, 5, 5, 3, 0, 0,
-            3, 5, 7, 7, 7, 7, 5, 3,
-            1, 2, 3, 4, 4, 3, 2, 1
-    };
-
-    /*
-     * Static score value for the bishop pair
-     */
-    private static final int scoreBishopPair = 40;
-
-    /*
-     * MvvLva is Most Valuable Victim, Least Valuable Attacker.
-     * Because we want a beta cutoff as early as possible, we change the search order to search the best moves first.
-     * Capture moves are ranked higher than quiet moves, and they are ranked after the most valuable victim compared
-     * to the least valuable attacker.
-     * Array indexed by piece number for the MvvLva values of each piece.
-     */
-    private static final int[] MvvLvaValue = {0, 100, 200, 300, 400, 500, 600, 100, 200, 300, 400, 500, 600};
-
-    /*
-     * MvvLva capture scores for each capture indexed by piece number * piece number
-     * index = captured piece * 13 + attacking piece
-     * For all possible combinations of piece capturing
-     * Saving computation time by having this pre-calculated
-     */
-    private static final int[] MvvLvaScore = new int[13 * 13];
-
-    /*
-     * Square number base 120 for the squares on the first and eighth rank
-     * Used for checking castling possibilities
-     */
-    private static final byte A1 = 21;
-    private static final byte B1 = 22;
-    private static final byte C1 = 23;
-    private static final byte D1 = 24;
-    private static final byte E1 = 25;
-    private static final byte F1 = 26;
-    private static final byte G1 = 27;
-    private static final byte H1 = 28;
-    private static final byte A8 = 91;
-    private static final byte B8 = 92;
-    private static final byte C8 = 93;
-    private static final byte D8 = 94;
-    private static final byte E8 = 95;
-    private static final byte F8 = 96;
-    private static final byte G8 = 97;
-    private static final byte H8 = 98;
-
-    /*
-     * The directions each of the pieces can move in
-     */
-    private static final byte[] dirKn = {-8, -19, -21, -12, 8, 19, 21, 12};
-    private static final byte[] dirRk = {-1, -10, 1, 10};
-    private static final byte[] dirBi = {-9, -11, 11, 9};
-    private static final byte[] dirKi = {-1, -10, 1, 10, -9, -11, 11, 9};
-
-    /*
-     * Array indexed by piece number that gets the direction each piece can move in.
-     * The King and Queen can move in the same directions, except the Queen is a sliding piece
-     */
-    private static final byte[][] pieceDir = {{}, {}, dirKn, dirBi, dirRk, dirKi, dirKi, {}, dirKn, dirBi, dirRk, dirKi, dirKi};
-
-    /*
-     * The score of a check mate
-     */
-    private static final int MATE_SCORE = 1000000;
-
-    /*
-     * Move variables
-     *
-     * Move structure, 32 bit int
-     *
-     * 0000 0000 0000 0000 0000 0000 0000 0000
-     *                                 xx xxxx  - From square    (0 - 63)
-     *                          xxxx xx         - To square      (0 - 63)
-     *                     xxxx                 - Captured Piece (0 - 15)
-     *                xxxx                      - Promoted Piece (0 - 15)
-     *              x                           - En passant     (boolean)
-     *             x                            - Pawn start     (boolean)
-     *            x                             - Castle move    (boolean)
-     *
-     * You can AND with the the move flags to get the value of each part
-     * of the move integer
-     */
-    private static final int MFLAG_ENPASSANT = 0x100000;
-    private static final int MFLAG_PAWNSTART = 0x200000;
-    private static final int MFLAG_CASTLE = 0x400000;
-    private static final int MFLAG_CAPTURE = 0xF000;
-    private static final int MFLAG_PROMOTION = 0xF0000;
-
-    /*
-     * Array containing the images of each of the pieces indexed by piece number
-     */
-    private BufferedImage[] imagePieces;
-
-    /*
-     * The main board array, 120 tiles where the piece numbers are stored
-     */
-    private byte[] board;
-
-    /*
-     * The current side to move
-     */
-    private byte side;
-
-    /*
-     * The number of moves since last capture or pawn move.
-     * If this number reaches 100 it is a draw
-     */
-    private byte fiftyMove;
-
-    /*
-     * The total number of half moves (ply) this game
-     */
-    private int numPly;
-
-    /*
-     * The number of half moves calculated - the current depth
-     */
-    private int comPly;
-
-    /*
-     * The en passant square
-     */
-    private byte enPas;
-
-    /*
-     * The castle permissions stored as bits instead of a boolean
-     * This allows for much simpler castle permission calculations by
-     * permission &= the castle permission change for this square instead
-     * of having a whole bunch of if-statements and booleans
-     * 0000 0000
-     *         x - White king side castle
-     *        x  - White queen side castle
-     *       x   - Black king side castle
-     *      x    - Black queen side castle
-     */
-    private byte castlePerm;
-
-    /*
-     * The material value of the two sides indexed by side
-     */
-    private int[] material;
-
-    /*
-     * The number of pieces of each piece type, indexed by square
-     */
-    private byte[] numPieces;
-
-    /*
-     * The square of each piece on the board.
-     * index = piece * 10 + the number of this piece for this piece type
-     * The maximum possible pieces of a type is 10 (for knight, rooks and bishops, if 8 pawns promote)
-     */
-    private byte[] pieceListSquare;
-
-    /*
-     * The hash position key of the current position.
-     * The hash key system is to check for position repetition.
-     * Each position has its own unique hash key, and if the exact same position
-     * occurs again it will have the same hash key.
-     * Thus things like the castle permissions and side must be included in the hash,
-     * because if they are changed it is not the same position.
-     */
-    private long posKey;
-
-    /*
-     * The unique hash keys for each combination of piece and square
-     * 13 * 120 size, index = piece num * 120 + square
-     */
-    private int[] pieceKeys;
-
-    /*
-     * The unique hash keys for the castle permissions,
-     * 16 size, index = castle permission
-     */
-    private int[] castleKeys;
-
-    /*
-     * The unique side hash key
-     */
-    private int sideKey;
-
-    /*
-     * The history of position keys this game
-     */
-    private long[] historyPosKey;
-
-    /*
-     * The history of moves this game
-     */
-    private int[] historyMove;
-
-    /*
-     * The history of the fifty move status this game
-     */
-    private byte[] historyFiftymove;
-
-    /*
-     * The history of the en passant square this game
-     */
-    private byte[] historyEnPas;
-
-    /*
-     * The history of the castle permission this game
-     */
-    private byte[] historyCastlePerm;
-
-    /*
-     * The primary variation is stored in two arrays,
-     * The move in pvMove indexed by position key % PV_ENTRIES
-     * Because two different position keys may give the same index, the array
-     * pvPosition Key keeps track of the original position key the pv entry came from
-     */
-    private long[] primaryVariationPositionKey;
-    private int[] primaryVariationMove;
-
-    /*
-     * The primary variation array stores the move integer of the primary variation
-     * down two the depth, indexed by the ply number
-     */
-    private int[] primaryVariation;
-
-    /*
-     * Array that stores the move score of good quiet moves that are good in most of the situations.
-     * This move will most likely occur in many situations and need to be searched earlier.
-     * Indexed by the from and to square
-     */
-    private int[] searchHistory;
-
-    /*
-     * Array of killer moves, moves that are rated the highest, indexed by the depth.
-     * There are always two killer moves stored. The killer move is a good move that might occur
-     * in several variations, therefore it should be searched first.
-     */
-    private int[] searchKillers;
-
-    /*
-     * Array to store the move ordering scores of each move indexed by the move list index
-     */
-    private int[] moveScores;
-
-    /*
-     * The move list is the list of moves available in a position.
-     * The moveListStart array keeps track of the starting index for each ply of the available moves
-     * in the move list array. moveListStart is indexed by the ply number
+     * The clocks of white and black and the increment per move in milliseconds for the console games.
+     * The console searches are limited by depth when the clocks are 0.
      */
-    private int[] moveList;
-    private int[] moveListStart;
-
-    /*
-     * The number of nodes searched
-     */
-    private long searchnodes;
-
-    /*
-     * The number of beta cut offs
-     * and the number of beta cut offs on the first move.
-     * These provide statistics for the move ordering. We want to search the best moves first,
-     * So that we have the highest chance of a beta cut off.
-     */
-    private int searchbc;
-    private int searchbcf;
-
-    /*
-     * The search depth to search to
-     */
-    private int searchdepth;
-
-    /*
-     * Boolean to keep track of the searching, if it should continue to search
-     */
-    private boolean searching;
+    private long[] clock;
+    private long clockInc;
 
     /*
      * The current status of the game
@@ -532,14 +64,9 @@ public class Chess extends Canvas {
     private String gameStatus;
 
     /*
-     * Boolean to show the gui, if loading resources failed, hide the gui
+     * The gui attached to the engine, null when the engine runs headless
      */
-    private boolean gui;
-
-    /*
-     * The selected tile by the user
-     */
-    private int sx, sy;
+    private Gui gui;
 
     /*
      * Boolean to check if the player is allowed to make a move
@@ -547,100 +74,37 @@ public class Chess extends Canvas {
     private boolean playerMove;
 
     /*
-     * The thread to handle rendering
-     */
-    private ProcessThread renderingThread;
-
-    /**
-     * Init the arrays to get the rank and file of a tile
+     * In UCI mode the search must not report the best move of an infinite or ponder search before the gui
+     * sends stop or ponderhit. The clock of a ponder search starts at the ponderhit.
      */
-    private static void initGetRankFile() {
-        for (int i = 0; i < BOARD_SQUARES; i++) {
-            /*
-             * Loop through all the tiles and set them to offboard
-             */
-            getFile[i] = OFFBOARD;
-            getRank[i] = OFFBOARD;
-        }
-
-        for (byte r = 0; r < 8; r++) {
-            for (byte f = 0; f < 8; f++) {
-                /*
-                 * Loop through all the ranks and files,
-                 * calculate the square base 64, set the rank to r
-                 * and set the file to f
-                 */
-                int sq = (21 + f) + (10 * r);
-                getFile[sq] = f;
-                getRank[sq] = r;
-            }
-        }
-    }
+    private volatile boolean uciWait;
 
-    /**
-     * Init the arrays for converting between square base 120 and base 64
+    /*
+     * The position of the game, and the searcher that searches it
      */
-    private static void initGetSquare() {
-        for (int i = 0; i < BOARD_SQUARES; i++) {
-            /*
-             * Loop through all the squares and set them to 64 (offboard)
-             */
-            getSquare64[i] = 64;
-        }
-
-        for (int i = 0; i < 64; i++) {
-            /*
-             * Loop through all the squares and set them to 120 (offboard)
-             */
-            getSquare120[i] = 120;
-        }
-
-        byte sq64 = 0;
-        for (byte r = 0; r < 8; r++) {
-            for (byte f = 0; f < 8; f++) {
-                /*
-                 * Loop through all the files and ranks, get the square number base 120 and set the square 64 number.
-                 */
-                byte sq = (byte) ((21 + f) + (10 * r));
-                getSquare120[sq64] = sq;
-                getSquare64[sq] = sq64;
-                sq64++;
-            }
-        }
-    }
+    private final Position position;
+    private final Searcher searcher;
 
     /**
-     * Init the array for getting the MvvLva score for each piece combination
+     * Check if the engine should run headless, either by the nogui argument or the java.awt.headless property
+     *
+     * @param args the runtime arguments
+     * @return boolean if the engine should run without the gui
      */
-    private static void initMvvLva() {
-        for (byte a = wP; a <= bK; a++) {
-            for (byte v = wP; v < bK; v++) {
-                /*
-                 * Loop through all the attacking pieces and set the values.
-                 * The value is calculated by taking the MvvLva value of the victim, add 6 (because 600/100 is 6)
-                 * and subtract the value of the attacker divided by 100.
-                 * This way the moves sorted by score will be most valuable victim first,
-                 * then those are sorted by least valuable attacker.
-                 */
-                MvvLvaScore[v * 13 + a] = MvvLvaValue[v] + 6 - (MvvLvaValue[a] / 100);
-            }
+    private static boolean isHeadless(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("nogui")) return true;
         }
+        return Boolean.getBoolean("java.awt.headless");
     }
 
     /**
      * Main method for the program.
      * Contains the main program control system
      *
-     * @param args no runtime arguments
+     * @param args nogui to run the engine headless, without initializing the gui
      */
     public static void main(String[] args) {
-        /*
-         * First set up the basic arrays
-         */
-        initGetRankFile();
-        initGetSquare();
-        initMvvLva();
-
         /*
          * Input setup
          */
@@ -661,13 +125,28 @@ public class Chess extends Canvas {
         System.out.println("  new            set the board to the start position");
         System.out.println("  stop           stop the process running");
         System.out.println("  play <depth>   play against the computer");
+        System.out.println("  clock <ms> [inc]  set the clocks for makeai, run and play, the depth becomes the maximum depth, 0 turns it off");
+        System.out.println("  hash <mb>      set the size of the transposition table in megabytes");
+        System.out.println("  evalhash <mb>  set the size of the evaluation cache in megabytes, 0 to turn it off");
+        System.out.println("  threads <n>    set the number of search threads");
+        System.out.println("  smpbench <d>   measure the median time to depth of 5 runs with 1, 2, 4, 8 and 16 threads");
+        System.out.println("  perft <depth>  count the leaf nodes of the move generator");
+        System.out.println("  divide <depth> count the leaf nodes for each move");
+        System.out.println("  pperft <depth> [split]  run perft in parallel over the search threads, splitting the moves");
+        System.out.println("                 of the first split depths (default 1) into separate tasks");
+        System.out.println("  perfthash <mb> set the size of the perft hash table in megabytes, 0 to turn it off");
+        System.out.println("  perftsuite <d> run the standard perft positions up to a depth and check the counts");
+        System.out.println("  bench [depth]  search a fixed set of positions and print the total nodes and the speed");
+        System.out.println("  evalbench <n>  measure the evaluations per second over at least n evaluations of the leaves of a depth 3 tree");
+        System.out.println("  uci            switch to the UCI protocol");
         System.out.println("  quit / exit    exit the application");
 
         /*
          * Setup the chess object to the starting position
          */
         Chess chess = new Chess();
-        chess.parseFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        if (!isHeadless(args)) chess.attachGui();
+        chess.setBoard(START_FEN);
         chess.printBoard();
 
         /*
@@ -712,7 +191,8 @@ public class Chess extends Canvas {
                      * Try to read the fen and parse it
                      */
                     String fen = line.substring(9);
-                    chess.parseFen(fen);
+                    chess.setBoard(fen);
+                    chess.searcher.clearHashTable();
                     chess.printBoard();
                 } catch (StringIndexOutOfBoundsException e) {
                     System.out.println("Invalid FEN!");
@@ -723,9 +203,9 @@ public class Chess extends Canvas {
                      * Try to read, parse, and execute the move
                      */
                     String move = line.substring(5);
-                    if (chess.attemptMove(move)) {
+                    if (chess.searcher.attemptMove(move)) {
                         if (!chess.checkStatus()) {
-                            chess.frame.setTitle(chess.gameStatus);
+                            chess.setTitle(chess.gameStatus);
                         }
                         chess.printBoard();
                     } else {
@@ -735,7 +215,7 @@ public class Chess extends Canvas {
                     System.out.println("Invalid move format!");
                 }
             } else if (line.startsWith("revertmove")) {
-                chess.revertMove();
+                chess.position.revertMove();
                 chess.printBoard();
             } else if (line.startsWith("makeai ")) {
                 if (processThread != null && processThread.isAlive()) {
@@ -750,10 +230,10 @@ public class Chess extends Canvas {
                         if (d > 0) {
                             processThread = new ProcessThread() {
                                 public void run() {
-                                    int move = chess.searchPosition(d, d);
-                                    if (move != 0) chess.makeMove(move);
+                                    int move = chess.searchByClock(d);
+                                    if (move != 0) chess.position.makeMove(move);
                                     if (!chess.checkStatus()) {
-                                        chess.frame.setTitle(chess.gameStatus);
+                                        chess.setTitle(chess.gameStatus);
                                     }
                                     chess.printBoard();
                                 }
@@ -781,22 +261,22 @@ public class Chess extends Canvas {
                                 public void run() {
                                     running = true;
                                     long start = System.currentTimeMillis();
-                                    int move = chess.searchPosition(d, d);
+                                    int move = chess.searchByClock(d);
                                     while (move != 0 && running) {
-                                        chess.makeMove(move);
+                                        chess.position.makeMove(move);
                                         if (!chess.checkStatus()) {
                                             /*
                                              * The game has ended in some way
                                              */
-                                            chess.frame.setTitle(chess.gameStatus);
+                                            chess.setTitle(chess.gameStatus);
                                             break;
                                         }
                                         chess.printBoard();
-                                        move = chess.searchPosition(d, d);
+                                        move = chess.searchByClock(d);
                                     }
                                     long end = System.currentTimeMillis();
                                     if (!chess.checkStatus()) {
-                                        chess.frame.setTitle(chess.gameStatus);
+                                        chess.setTitle(chess.gameStatus);
                                     }
                                     chess.printBoard();
                                     System.out.println("Time Used: " + (end - start) + " ms");
@@ -812,7 +292,8 @@ public class Chess extends Canvas {
                 /*
                  * Set the board position to the startup position
                  */
-                chess.parseFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+                chess.setBoard(START_FEN);
+                chess.searcher.clearHashTable();
                 chess.checkStatus();
                 chess.printBoard();
             } else if (line.startsWith("play ")) {
@@ -828,29 +309,29 @@ public class Chess extends Canvas {
                         processThread = new ProcessThread() {
                             public void run() {
                                 running = true;
-                                byte side = chess.side;
+                                byte side = chess.position.side;
                                 while (running) {
-                                    if (chess.side == side) {
+                                    if (chess.position.side == side) {
                                         /*
                                          * Check if it's the computer's turn to move
                                          */
 
-                                        int move = chess.searchPosition(d, d);
+                                        int move = chess.searchByClock(d);
                                         if (move != 0) {
-                                            chess.makeMove(move);
+                                            chess.position.makeMove(move);
                                             if (!chess.checkStatus()) {
-                                                chess.frame.setTitle(chess.gameStatus);
+                                                chess.setTitle(chess.gameStatus);
                                                 break;
                                             }
                                             chess.printBoard();
                                         } else {
                                             if (!chess.checkStatus()) {
-                                                chess.frame.setTitle(chess.gameStatus);
+                                                chess.setTitle(chess.gameStatus);
                                             }
                                             break;
                                         }
                                         if (!chess.checkStatus()) {
-                                            chess.frame.setTitle(chess.gameStatus);
+                                            chess.setTitle(chess.gameStatus);
                                             break;
                                         }
                                     }
@@ -872,2104 +353,1141 @@ public class Chess extends Canvas {
                 } catch (NumberFormatException e) {
                     System.out.println("Invalid Number!");
                 }
-            } else if (line.startsWith("stop")) {
-                if (processThread == null) {
-                    System.out.println("No processes running!");
+            } else if (line.startsWith("clock ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
                 } else {
-                    /*
-                     * Stop the process from running and end the search.
-                     * Join the thread.
-                     */
-                    processThread.running = false;
-                    chess.searching = false;
                     try {
-                        processThread.join();
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                        /*
+                         * Try to read the time and the increment, and set both clocks
+                         */
+                        String[] tokens = line.substring(6).trim().split(" +");
+                        long time = Long.parseLong(tokens[0]);
+                        long inc = tokens.length > 1 ? Long.parseLong(tokens[1]) : 0;
+                        if (time >= 0 && inc >= 0) {
+                            chess.clock[WHITE] = time;
+                            chess.clock[BLACK] = time;
+                            chess.clockInc = inc;
+                            System.out.println("Clock: " + time + " ms Increment: " + inc + " ms");
+                        }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
                     }
                 }
-            } else {
-                System.out.println("Invalid command!");
-            }
-        }
-
-        /*
-         * Stop the program
-         */
-        chess.stop();
-    }
-
-    /**
-     * Chess object initialization
-     */
-    private Chess() {
-        /*
-         * See comments above for variable explanation
-         */
-        board = new byte[BOARD_SQUARES];
-        side = 0;
-        fiftyMove = 0;
-        numPly = 0;
-        comPly = 0;
-        enPas = NO_SQ;
-        castlePerm = 0;
-        material = new int[2];
-        numPieces = new byte[13];
-        pieceListSquare = new byte[13 * 10];
-        posKey = 0;
-        searchnodes = 0;
-        searchbc = 0;
-        searchbcf = 0;
-        searchdepth = 0;
-        pieceKeys = new int[13 * 120];
-        castleKeys = new int[16];
-        primaryVariationPositionKey = new long[PV_ENTRIES];
-        primaryVariationMove = new int[PV_ENTRIES];
-        moveList = new int[MAX_DEPTH * MAX_POSITION_MOVES];
-        moveScores = new int[MAX_DEPTH * MAX_POSITION_MOVES];
-        moveListStart = new int[MAX_DEPTH];
-        historyPosKey = new long[MAX_GAME_MOVES];
-        historyFiftymove = new byte[MAX_GAME_MOVES];
-        historyEnPas = new byte[MAX_GAME_MOVES];
-        historyCastlePerm = new byte[MAX_GAME_MOVES];
-        historyMove = new int[MAX_GAME_MOVES];
-        primaryVariation = new int[MAX_DEPTH];
-        searchHistory = new int[13 * BOARD_SQUARES];
-        searchKillers = new int[2 * MAX_DEPTH];
-        gameStatus = RUNNING;
-        gui = true; // gui is set to true by default, but will turn off if resource loading fails
-        sx = -1;
-        sy = -1;
-        playerMove = true;
-
-        /*
-         * Init the position hash key variables to random positive integers
-         */
-        Random random = new Random();
-        for (int i = 0; i < pieceKeys.length; i++) {
-            pieceKeys[i] = Math.abs(random.nextInt());
-        }
-        for (int i = 0; i < castleKeys.length; i++) {
-            castleKeys[i] = Math.abs(random.nextInt());
-        }
-        sideKey = Math.abs(random.nextInt());
-
-        try {
-            /*
-             * Try to load the image resources for the pieces in the gui
-             */
-            imagePieces = new BufferedImage[]{
-                    null,
-                    ImageIO.read(getClass().getResource("/white/pawn.png")),
-                    ImageIO.read(getClass().getResource("/white/knight.png")),
-                    ImageIO.read(getClass().getResource("/white/bishop.png")),
-                    ImageIO.read(getClass().getResource("/white/rook.png")),
-                    ImageIO.read(getClass().getResource("/white/queen.png")),
-                    ImageIO.read(getClass().getResource("/white/king.png")),
-                    ImageIO.read(getClass().getResource("/black/pawn.png")),
-                    ImageIO.read(getClass().getResource("/black/knight.png")),
-                    ImageIO.read(getClass().getResource("/black/bishop.png")),
-                    ImageIO.read(getClass().getResource("/black/rook.png")),
-                    ImageIO.read(getClass().getResource("/black/queen.png")),
-                    ImageIO.read(getClass().getResource("/black/king.png"))
-            };
-        } catch (IOException e) {
-            /*
-             * If the loading failed, disable the gui
-             */
-            gui = false;
-            e.printStackTrace();
-        }
-
-        if (gui) {
-            /*
-             * If gui is turned on, initialize it
-             */
-            Dimension size = new Dimension(width * 8, height * 8);
-            frame = new JFrame();
-            setPreferredSize(size);
-            frame.setResizable(false);
-            frame.setTitle("Chess");
-            frame.add(this);
-            frame.pack();
-            frame.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
-            frame.setLocationRelativeTo(null);
-            frame.setVisible(true);
-            addMouseListener(new MouseAdapter() {
-                public void mouseClicked(MouseEvent e) {
-                    if (playerMove) {
+            } else if (line.startsWith("hash ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
+                } else {
+                    try {
                         /*
-                         * If the player is allowed to make a move, get the tile,
-                         * check if any other tiles are selected, if they are attempt a move
-                         * unless they are the same, in either case un-mark the tile.
-                         * Otherwise, mark the tile
+                         * Try to read the size and reallocate the transposition table
                          */
-                        int tx = e.getX() / width;
-                        int ty = e.getY() / height;
-
-                        if (sy >= 0 && sx >= 0) {
-                            if (tx != sx || ty != sy) {
-                                String moveString = "" + (char) ('a' + sx) + (8 - sy) + (char) ('a' + tx) + (8 - ty);
-                                System.out.println("Attempting Move : " + moveString);
-                                boolean res = attemptMove(moveString);
-                                if (!res) {
-                                    System.out.println("Move failed!");
-                                }
-                            }
-                            sx = -1;
-                            sy = -1;
-                        } else {
-                            sy = ty;
-                            sx = tx;
+                        final int mb = Integer.parseInt(line.substring(5));
+                        if (mb > 0) {
+                            chess.searcher.initHashTable(mb);
+                            System.out.println("Hash: " + (chess.searcher.hashKeys.length * (long) HASH_ENTRY_BYTES / (1024 * 1024)) + " MB");
                         }
-                        checkStatus(); // Check the status to see if the game has ended or not
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
                     }
                 }
-            });
-            /*
-             * Because the rendering thread must be shut down before closing the window,
-             * A custom window closing event is necessary to close the chess object.
-             */
-            frame.addWindowListener(new WindowAdapter() {
-                public void windowClosing(WindowEvent e) {
-                    stop();
-                }
-            });
-            requestFocus();
-
-            renderingThread = new ProcessThread() {
-                public void run() {
-                    running = true;
-                    while (running) {
+            } else if (line.startsWith("evalhash ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
+                } else {
+                    try {
                         /*
-                         * While the renderer is running and the game is not searching render the board
+                         * Try to read the size and reallocate or turn off the evaluation cache
                          */
-                        if (!searching) {
-                            render();
-                        }
-                        try {
-                            /*
-                             * There is no need to consume processing power by rendering all the time,
-                             * so sleep a few milliseconds between each time
-                             */
-                            Thread.sleep(1000 / 60);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
+                        final int mb = Integer.parseInt(line.substring(9));
+                        if (mb >= 0) {
+                            chess.searcher.initEvalHash(mb);
+                            System.out.println("Eval hash: " + mb + " MB");
                         }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
                     }
                 }
-            };
-            renderingThread.start();
-        }
-
-        resetBoard();
-    }
-
-    /**
-     * Stop the gui and renderer from running
-     */
-    private void stop() {
-        try {
-            if (gui) {
-                gui = false;
-                renderingThread.running = false;
-                renderingThread.join();
-                frame.dispose();
-            }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * Render the board to the screen
-     */
-    private void render() {
-        /*
-         * Create the buffer strategy and graphics if they do not exist
-         */
-        BufferStrategy bs = getBufferStrategy();
-        if (bs == null) {
-            createBufferStrategy(bufferingLevel);
-            return;
-        }
-        Graphics g = bs.getDrawGraphics();
-
-        for (int y = 0; y < 8; y++) {
-            for (int x = 0; x < 8; x++) {
-                /*
-                 * Loop through all the tiles on the board. If it's an odd tile color it blue, otherwise white
-                 */
-                if ((x + y) % 2 == 1) {
-                    g.setColor(new Color(51, 188, 255));
+            } else if (line.startsWith("threads ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
                 } else {
-                    g.setColor(Color.WHITE);
+                    try {
+                        /*
+                         * Try to read the number of threads
+                         */
+                        final int n = Integer.parseInt(line.substring(8));
+                        if (n > 0 && n <= MAX_THREADS) {
+                            chess.searcher.threads = n;
+                            System.out.println("Threads: " + n);
+                        } else {
+                            System.out.println("Threads must be between 1 and " + MAX_THREADS + "!");
+                        }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
+                    }
                 }
-
-                /*
-                 * Draw a rectangle on the square
-                 */
-                g.fillRect(x * width, y * height, width, height);
-
-                /*
-                 * Get the piece on the square and draw it if it is non zero
-                 */
-                byte piece = board[getSquare120[mirror64[x + y * 8]]]; // We mirror because the board is rendered with black on top
-                if (piece != 0) {
-                    g.drawImage(imagePieces[piece], x * width, y * height, width, height, null);
+            } else if (line.startsWith("smpbench ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
+                } else {
+                    try {
+                        /*
+                         * Try to read the depth and run the benchmark in a new thread
+                         */
+                        final int d = Integer.parseInt(line.substring(9));
+                        if (d > 0) {
+                            processThread = new ProcessThread() {
+                                public void run() {
+                                    running = true;
+                                    chess.benchmarkThreads(d, this);
+                                }
+                            };
+                            processThread.start();
+                        }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
+                    }
                 }
-            }
-        }
-
-        /*
-         * If a square is selected mark it with a red frame
-         */
-        if (sx >= 0 && sy >= 0) {
-            g.setColor(Color.RED);
-            g.drawRect(sx * width, sy * height, width - 1, height - 1);
-            g.drawRect(sx * width + 1, sy * height + 1, width - 3, height - 3);
-        }
-
-        g.dispose();
-        bs.show();
-    }
-
-    /**
-     * Print the board to the console
-     */
-    private void printBoard() {
-        /*
-         * Whenever we call the printBoard function we also want to show the board on the screen, in case
-         * it is missed by the rendering window in between searches
-         */
-        if (gui) render();
-
-        /*
-         * Print the board status variables
-         */
-        System.out.println();
-        System.out.println("Move number: " + numPly);
-        System.out.println("Castling: " + castlePerm);
-        System.out.print("Position: ");
-        System.out.printf("%02x\n", posKey);
-        System.out.println("En passant: " + enPas);
-        System.out.println("50 move status: " + fiftyMove);
-        System.out.println("Side : " + sideChar[side]);
-        System.out.println("Status: " + gameStatus);
-        System.out.println();
-        System.out.println("    a  b  c  d  e  f  g  h");
-        System.out.println();
-
-        /*
-         * Print the symbols, tiles and pieces
-         */
-        for (byte rank = 7; rank >= 0; rank--) {
-            System.out.print((rank + 1) + "  ");
-            for (byte file = 0; file < 8; file++) {
-                System.out.print(" " + pieceChars[board[(21 + file) + (10 * rank)]] + " ");
-            }
-            System.out.println("  " + (rank + 1));
-        }
-        System.out.println();
-        System.out.println("    a  b  c  d  e  f  g  h");
-        System.out.println();
-    }
-
-    /**
-     * Create a printable string from a move of integer format
-     *
-     * @param move Move variable of integer format
-     * @return String object in printable format of the move
-     */
-    private String moveToString(int move) {
-        String result = "";
-
-        /*
-         * Get the to and from files and ranks and add them to the result
-         */
-        int from_file = getFile[getFromSq(move)];
-        int from_rank = getRank[getFromSq(move)];
-        int to_file = getFile[getToSq(move)];
-        int to_rank = getRank[getToSq(move)];
-
-        result += ((char) ('a' + from_file)) + "" + (1 + from_rank) + ((char) ('a' + to_file)) + "" + (1 + to_rank);
-
-        /*
-         * If the move was a promotion or capture move add the promoted or captured piece to the result
-         */
-        int promoted = getPromotedPiece(move);
-        int captured = getCapturedPiece(move);
-
-        if (captured != 0) {
-            result += "x" + pieceChars[captured];
-        }
-        if (promoted != 0) {
-            result += "=" + pieceChars[promoted];
-        }
-
-        return result;
-    }
-
-    /**
-     * Generate the position hash key for the current board position
-     *
-     * @return long position hash key
-     */
-    private long generatePosKey() {
-        long finalKey = 0;
-
-        /*
-         * Loop through the board and hash in the piece and square combinations
-         */
-        for (byte sq = 0; sq < BOARD_SQUARES; sq++) {
-            byte piece = board[sq];
-            if (piece != EMPTY && piece != OFFBOARD) {
-                finalKey ^= pieceKeys[piece * 120 + sq];
-            }
-        }
-
-        /*
-         * Hash in the castle permissions
-         */
-        finalKey ^= castleKeys[castlePerm];
-
-        /*
-         * Hash in the side key if the side is white
-         */
-        if (side == WHITE) {
-            finalKey ^= sideKey;
-        }
-
-        /*
-         * Hash in the en passant square if it exists
-         */
-        if (enPas != NO_SQ) {
-            finalKey ^= pieceKeys[enPas];
-        }
-
-        return finalKey;
-    }
-
-    /**
-     * Toggle the hash key for a piece on a square
-     *
-     * @param sq position of the piece by square number base 120
-     * @param piece piece number of the piece to hash
-     */
-    private void togglePieceHash(int sq, int piece) {
-        posKey ^= pieceKeys[piece * 120 + sq];
-    }
-
-    /**
-     * Toggle the hash key for the castle permission
-     */
-    private void toggleCastleHash() {
-        posKey ^= castleKeys[castlePerm];
-    }
-
-    /**
-     * Toggle the hash key for the en passant square
-     */
-    private void toggleEnpasHash() {
-        posKey ^= pieceKeys[enPas];
-    }
-
-    /**
-     * Remove a piece from a square on the board
-     *
-     * @param sq the square base 120 from which to remove a piece
-     */
-    private void removePiece(byte sq) {
-        /*
-         * Get the piece number and the color
-         */
-        byte piece = board[sq];
-        int color = colPieces[piece];
-
-        /*
-         * Toggle the hash for this piece on this square
-         */
-        togglePieceHash(sq, piece);
-
-        /*
-         * Set the square to empty and subtract from the material score
-         */
-        board[sq] = EMPTY;
-        material[color] -= valPieces[piece];
-
-        /*
-         * Remove the piece from the piece list by searching through it until the piece is found,
-         * and then swapping it with the last piece in the index, and decrementing the number of pieces
-         */
-        int position = -1;
-        for (int i = piece * 10; i < piece * 10 + numPieces[piece]; i++) {
-            if (pieceListSquare[i] == sq) {
-                position = i;
-                break;
-            }
-        }
-        pieceListSquare[position] = pieceListSquare[piece * 10 + --numPieces[piece]];
-    }
-
-    /**
-     * Add a piece to the board
-     * @param sq the target square base 120
-     * @param piece the chosen piece number
-     */
-    private void addPiece(byte sq, byte piece) {
-        /*
-         * Get the color of the piece, toggle the hash key, set the target square to the piece,
-         * Update the material value and the piece list
-         */
-        int color = colPieces[piece];
-        togglePieceHash(sq, piece);
-        board[sq] = piece;
-        material[color] += valPieces[piece];
-        pieceListSquare[piece * 10 + numPieces[piece]++] = sq;
-    }
-
-    /**
-     * Move a piece from square a to b
-     * @param sq the from square base 120
-     * @param to_sq the to swuare base 120
-     */
-    private void movePiece(byte sq, byte to_sq) {
-        /*
-         * Get the piece and toggle the hash keys for the squares.
-         * Update the board data and change the square in the piece list
-         */
-        byte piece = board[sq];
-        togglePieceHash(sq, piece);
-        togglePieceHash(to_sq, piece);
-        board[sq] = EMPTY;
-        board[to_sq] = piece;
-        for (int i = piece * 10; i < piece * 10 + numPieces[piece]; i++) {
-            if (pieceListSquare[i] == sq) {
-                pieceListSquare[i] = to_sq;
-                break;
-            }
-        }
-    }
-
-    /**
-     * Make a move
-     * @param move move of integer format
-     * @return boolean if the move was successful/legal or not
-     */
-    private boolean makeMove(int move) {
-        /*
-         * Get the from and to squares, and store the side to move
-         */
-        byte from = getFromSq(move);
-        byte to = getToSq(move);
-        byte mside = this.side;
-
-        /*
-         * Save the position key in the history array
-         */
-        historyPosKey[numPly] = posKey;
-
-        /*
-         * If the move was an en passant capture remove the captured piece
-         */
-        if ((move & MFLAG_ENPASSANT) != 0) {
-            removePiece(mside == WHITE ? ((byte) (to - 10)) : ((byte) (to + 10)));
-        } else if ((move & MFLAG_CASTLE) != 0) {
-            /*
-             * If the move was a castling move update the rook position based on the to square of the king
-             */
-            switch (to) {
-                case C1:
-                    movePiece(A1, D1);
-                    break;
-                case C8:
-                    movePiece(A8, D8);
-                    break;
-                case G1:
-                    movePiece(H1, F1);
-                    break;
-                case G8:
-                    movePiece(H8, F8);
-                    break;
-                default:
-                    System.out.println("Notice: Invalid castle move: " + move);
-                    break;
-            }
-        }
-
-        /*
-         * If the previous en passant square existed toggle the hash
-         * Toggle the castle permission hash
-         */
-        if (enPas != NO_SQ) toggleEnpasHash();
-        toggleCastleHash();
-
-        /*
-         * Save the board variables to history
-         */
-        historyCastlePerm[numPly] = castlePerm;
-        historyEnPas[numPly] = enPas;
-        historyFiftymove[numPly] = fiftyMove;
-        historyMove[numPly] = move;
-
-        /*
-         * Update the castle permissions based on the to and from square
-         * (Check the comment for the castlePermSquare array)
-         * Reset the en passant square, and toggle the castle hash
-         */
-        castlePerm &= castlePermSquare[from];
-        castlePerm &= castlePermSquare[to];
-        enPas = NO_SQ;
-        toggleCastleHash();
-
-        /*
-         * Get the captured piece, and remove it if it was non empty
-         * A capture resets the fifty move counter.
-         */
-        byte captured = getCapturedPiece(move);
-        if (captured != EMPTY) {
-            removePiece(to);
-            fiftyMove = 0;
-        } else {
-            fiftyMove++;
-        }
-
-        /*
-         * Increment the number of moves
-         */
-        numPly++;
-        comPly++;
-
-        /*
-         * If the piece moved was a pawn, and it was a pawn start move, add the en passant square and toggle the hash
-         */
-        if (piecePawn[board[from]]) {
-            fiftyMove = 0;
-            if ((move & MFLAG_PAWNSTART) != 0) {
-                enPas = mside == WHITE ? (byte) (from + 10) : (byte) (from - 10);
-                toggleEnpasHash();
-            }
-        }
-
-        /*
-         * Get the promoted piece, and if it is non empty remove the pawn and add the promoted piece
-         */
-        byte promoted = getPromotedPiece(move);
-        if (promoted != EMPTY) {
-            removePiece(from);
-            addPiece(to, promoted);
-        } else {
-            movePiece(from, to);
-        }
-
-        /*
-         * Toggle the side, and toggle the side hash
-         */
-        side ^= 1;
-        posKey ^= sideKey;
-
-        /*
-         * If the king is in check however the move is illegal. Revert the move and return false
-         */
-        if (isAttacked(pieceListSquare[sidesKings[mside] * 10], side)) {
-            revertMove();
-            return false;
-        }
-
-        return true;
-    }
-
-    /**
-     * Check the current status of the board
-     * @return boolean if the game is still running
-     */
-    private boolean checkStatus() {
-        /*
-         * If the fifty move rule has been reach it's a draw
-         */
-        if (fiftyMove >= 100) {
-            gameStatus = DRAW + " - 50 moves";
-            return false;
-        }
-
-        /*
-         * If the same position has been repeated 3 times it's a draw
-         */
-        int reps = 0;
-        for (int i = numPly - 1; i >= 0; i--) {
-            if (historyPosKey[i] == posKey) reps++;
-        }
-        if (reps >= 3) {
-            gameStatus = DRAW + " - Repetitions";
-            return false;
-        }
-
-        /*
-         * If there is insufficient mating material it's a draw
-         */
-        if (!(numPieces[wP] > 0 || numPieces[bP] > 0 || numPieces[wR] > 0 || numPieces[bR] > 0 || numPieces[wQ] > 0 || numPieces[bQ] > 0 || numPieces[wB] + numPieces[wN] >= 2 || numPieces[bB] + numPieces[bN] >= 2)) {
-            gameStatus = DRAW;
-            return false;
-        }
-
-        /*
-         * If there are no legal moves the game is over, and is mate if the king is attacked, otherwise a stale mate
-         */
-        generateMoves();
-        int legalMoves = 0;
-
-        for (int i = moveListStart[comPly]; i < moveListStart[comPly + 1]; i++) {
-            if (makeMove(moveList[i])) {
-                legalMoves++;
-                revertMove();
-            }
-        }
-        if (legalMoves == 0) {
-            if (isAttacked(pieceListSquare[sidesKings[side] * 10], side ^ 1)) {
-                gameStatus = MATE;
-            } else {
-                gameStatus = STALEMATE;
-            }
-            return false;
-        }
-
-        return true;
-    }
-
-    /**
-     * Revert the last move
-     */
-    private void revertMove() {
-        /*
-         * Decrement the move counter
-         */
-        numPly--;
-        comPly--;
-        if (comPly < 0) comPly = 0;
-        if (numPly < 0) numPly = 0;
-
-        /*
-         * Retrieve the move from history
-         */
-        int move = historyMove[numPly];
-
-        /*
-         * The rest works just like makeMove()
-         */
-        byte to = getToSq(move);
-        byte from = getFromSq(move);
-        if (enPas != NO_SQ) toggleEnpasHash();
-        toggleCastleHash();
-
-        castlePerm = historyCastlePerm[numPly];
-        fiftyMove = historyFiftymove[numPly];
-        enPas = historyEnPas[numPly];
-
-        if (enPas != NO_SQ) toggleEnpasHash();
-        toggleCastleHash();
-        side ^= 1;
-        posKey ^= sideKey;
-
-        if ((move & MFLAG_ENPASSANT) != 0) {
-            if (side == WHITE) {
-                addPiece((byte) (to - 10), bP);
-            } else {
-                addPiece((byte) (to + 10), wP);
-            }
-        } else if ((move & MFLAG_CASTLE) != 0) {
-            switch (to) {
-                case C1:
-                    movePiece(D1, A1);
-                    break;
-                case C8:
-                    movePiece(D8, A8);
-                    break;
-                case G1:
-                    movePiece(F1, H1);
-                    break;
-                case G8:
-                    movePiece(F8, H8);
-                    break;
-                default:
-                    System.out.println("Notice: Invalid castle move: " + move);
-                    break;
-            }
-        }
-
-        movePiece(to, from);
-        byte captured = getCapturedPiece(move);
-        if (captured != EMPTY) {
-            addPiece(to, captured);
-        }
-
-        byte promoted = getPromotedPiece(move);
-        if (promoted != EMPTY) {
-            removePiece(from);
-            addPiece(from, colPieces[promoted] == WHITE ? wP : bP);
-        }
-    }
-
-    /**
-     * Reset the board
-     */
-    private void resetBoard() {
-        resetPieceListMaterial();
-
-        /*
-         * Set all the squares to off board and fill them with empty pieces
-         */
-        for (int i = 0; i < BOARD_SQUARES; i++) {
-            board[i] = OFFBOARD;
-        }
-        for (int i = 0; i < 64; i++) {
-            board[getSquare120[i]] = EMPTY;
-        }
-
-        /*
-         * Reset the board variables and empty the arrays.
-         * See comment by declaration for more info.
-         */
-        side = NONE;
-        enPas = NO_SQ;
-        fiftyMove = 0;
-        comPly = 0;
-        numPly = 0;
-        castlePerm = 0;
-        posKey = 0;
-        moveListStart[comPly] = 0;
-        historyPosKey = new long[MAX_GAME_MOVES];
-        historyFiftymove = new byte[MAX_GAME_MOVES];
-        historyEnPas = new byte[MAX_GAME_MOVES];
-        historyCastlePerm = new byte[MAX_GAME_MOVES];
-        historyMove = new int[MAX_GAME_MOVES];
-        gameStatus = RUNNING;
-    }
-
-    /**
-     * Reset the piece list and the material values
-     */
-    private void resetPieceListMaterial() {
-        /*
-         * Loop through all the squares in the piece list and set them to no square.
-         * Set the material score to 0 and the number of pieces to 0.
-         */
-        for (int i = 0; i < pieceListSquare.length; i++) {
-            pieceListSquare[i] = NO_SQ;
-        }
-
-        for (int i = 0; i < material.length; i++) {
-            material[i] = 0;
-        }
-
-        for (int i = 0; i < numPieces.length; i++) {
-            numPieces[i] = 0;
-        }
-    }
-
-    /**
-     * Update the piece lists and material value
-     */
-    private void updatePieceListMaterial() {
-        resetPieceListMaterial();
-
-        /*
-         * Loop through the squares of the board, and if it's a piece add it to the lists
-         */
-        for (int i = 0; i < 64; i++) {
-            byte piece = board[getSquare120[i]];
-            if (piece != EMPTY) {
-                int col = colPieces[piece];
-                material[col] += valPieces[piece];
-                pieceListSquare[piece * 10 + numPieces[piece]] = getSquare120[i];
-                numPieces[piece]++;
-            }
-        }
-    }
-
-    /**
-     * Parse a fen position string
-     * @param fen position string
-     */
-    private void parseFen(String fen) {
-        resetBoard();
-
-        /*
-         * The reading starts at the 8th rank (index 7) and the first file (index 0)
-         */
-        int rank = 7;
-        int file = 0;
-        int fenc = 0; // The fen character position counter
-
-        while (rank >= 0 && fenc < fen.length()) {
-            int count = 1;
-            byte piece;
-            /*
-             * If it's a piece char add it,
-             * A number means x blank spaces so the piece is set to blank,
-             * and set the count to the number
-             * '/' or ' ' means to end the line and decrement the rank
-             */
-            switch (fen.charAt(fenc)) {
-                case 'p':
-                    piece = bP;
-                    break;
-                case 'r':
-                    piece = bR;
-                    break;
-                case 'n':
-                    piece = bN;
-                    break;
-                case 'b':
-                    piece = bB;
-                    break;
-                case 'k':
-                    piece = bK;
-                    break;
-                case 'q':
-                    piece = bQ;
-                    break;
-                case 'P':
-                    piece = wP;
-                    break;
-                case 'R':
-                    piece = wR;
-                    break;
-                case 'N':
-                    piece = wN;
-                    break;
-                case 'B':
-                    piece = wB;
-                    break;
-                case 'K':
-                    piece = wK;
-                    break;
-                case 'Q':
-                    piece = wQ;
-                    break;
-
-                case '1':
-                case '2':
-                case '3':
-                case '4':
-                case '5':
-                case '6':
-                case '7':
-                case '8':
-                    piece = EMPTY;
-                    count = fen.charAt(fenc) - '0';
-                    break;
-
-                case '/':
-                case ' ':
-                    rank--;
-                    file = 0;
-                    fenc++;
-                    continue;
-                default:
-                    System.out.println("FEN error!");
-                    return;
-            }
-
-            /*
-             * By default the count is one, but if it's a space it might be more.
-             * Add the number of pieces equal to the count.
-             */
-            for (int i = 0; i < count; i++) {
-                int sq = (21 + file) + (10 * rank);
-                board[sq] = piece;
-                file++;
-            }
-            fenc++;
-        }
-
-        /*
-         * Get the side to move
-         */
-        side = (fen.charAt(fenc) == 'w') ? WHITE : BLACK;
-        fenc += 2;
-
-        /*
-         * Get the castling permissions
-         */
-        for (int i = 0; i < 4; i++) {
-            if (fen.charAt(fenc) == ' ') {
-                break;
-            }
-            switch (fen.charAt(fenc)) {
-                case 'K':
-                    castlePerm |= WKCA;
-                    break;
-                case 'Q':
-                    castlePerm |= WQCA;
-                    break;
-                case 'k':
-                    castlePerm |= BKCA;
-                    break;
-                case 'q':
-                    castlePerm |= BQCA;
-                    break;
-                default:
-                    break;
-            }
-            fenc++;
-        }
-        fenc++;
-
-        /*
-         * Get the en passant square
-         */
-        if (fen.charAt(fenc) != '-') {
-            file = fen.charAt(fenc) - 'a';
-            rank = fen.charAt(++fenc) - '1';
-            enPas = (byte) ((21 + file) + (10 * rank));
-        }
-
-        /*
-         * Set the position key and update the piece lists
-         */
-        posKey = generatePosKey();
-        updatePieceListMaterial();
-    }
-
-    /**
-     * Checks if a square is attacked by a side
-     * @param sq the square number base 120
-     * @param side the side it's attacked by
-     * @return boolean if the square is attacked
-     */
-    private boolean isAttacked(int sq, int side) {
-        /*
-         * Pawn captures must be checked separately
-         */
-        if (side == WHITE) {
-            if (board[sq - 11] == wP || board[sq - 9] == wP) return true;
-        } else {
-            if (board[sq + 11] == bP || board[sq + 9] == bP) return true;
-        }
-
-        /*
-         * For each of the knight's direction check if the piece there is a knight of the opposite color
-         */
-        for (int i = 0; i < dirKn.length; i++) {
-            byte pce = board[sq + dirKn[i]];
-            if (pce != OFFBOARD && colPieces[pce] == side && pieceKnight[pce]) return true;
-        }
-
-        /*
-         * For each of the bishop's directions check until it hits a piece or the end of the board,
-         * then if it's a bishop or queen of the opposite color.
-         */
-        for (int i = 0; i < dirBi.length; i++) {
-            int tsq = sq + dirBi[i];
-            byte pce = board[tsq];
-            while (pce != OFFBOARD) {
-                if (pce != EMPTY) {
-                    if (pieceBishopQueen[pce] && colPieces[pce] == side) return true;
-                    break;
-                }
-                tsq += dirBi[i];
-                pce = board[tsq];
-            }
-        }
-
-        /*
-         * For each of the rook's directions check until it hits a piece or the end of the board,
-         * then if it's a rook or queen of the opposite color
-         */
-        for (int i = 0; i < dirRk.length; i++) {
-            int tsq = sq + dirRk[i];
-            byte pce = board[tsq];
-            while (pce != OFFBOARD) {
-                if (pce != EMPTY) {
-                    if (pieceRookQueen[pce] && colPieces[pce] == side) return true;
-                    break;
-                }
-                tsq += dirRk[i];
-                pce = board[tsq];
-            }
-        }
-
-        /*
-         * For each of the king's directions check if the piece there is a king of the opposite color
-         */
-        for (int i = 0; i < dirKi.length; i++) {
-            byte pce = board[sq + dirKi[i]];
-            if (pce != OFFBOARD && colPieces[pce] == side && pieceKing[pce]) return true;
-        }
-
-        return false;
-    }
-
-    /**
-     * Get the from square 120 out of a move integer
-     * @param move move of integer format
-     * @return byte square
-     */
-    private byte getFromSq(int move) {
-        return getSquare120[move & 0x3F];
-    }
-
-    /**
-     * Get the to square 120 out of a move integer
-     * @param move move of integer format
-     * @return byte square
-     */
-    private byte getToSq(int move) {
-        return getSquare120[(move >> 6) & 0x3F];
-    }
-
-    /**
-     * Get the captured piece out of a move integer
-     * @param move move of integer format
-     * @return byte piece number
-     */
-    private byte getCapturedPiece(int move) {
-        return (byte) ((move >> 12) & 0xF);
-    }
-
-    /**
-     * Get the promoted piece out of a move integer
-     * @param move move of integer format
-     * @return byte piece number
-     */
-    private byte getPromotedPiece(int move) {
-        return (byte) ((move >> 16) & 0xF);
-    }
-
-    /**
-     * Create a move integer when given the from square, to square, captured piece, promoted piece, and a special move flag
-     * @param from the from square
-     * @param to the to square
-     * @param captured_piece any captured pieces
-     * @param promoted_piece any promoted pieces
-     * @param move_flag any special move flags
-     * @return move of integer format
-     */
-    private int getMove(int from, int to, int captured_piece, int promoted_piece, int move_flag) {
-        return getSquare64[from] | (getSquare64[to] << 6) | (captured_piece << 12) | (promoted_piece << 16) | move_flag;
-    }
-
-    /**
-     * Add a capture move to the move list
-     * @param move move of integer format
-     */
-    private void addCaptureMove(int move) {
-        /*
-         * Capture moves are scored by the MvvLva list when added to the list.
-         * In addition all capture moves get + 1 000 000 score in the list, to make sure they are searched
-         * before other moves and before killer moves
-         */
-        moveList[moveListStart[comPly + 1]] = move;
-        moveScores[moveListStart[comPly + 1]++] = MvvLvaScore[getCapturedPiece(move) * 13 + board[getFromSq(move)]] + 1000000;
-    }
-
-    /**
-     * Add a quiet move to the list
-     * @param move move of integer format
-     */
-    private void addQuietMove(int move) {
-        moveList[moveListStart[comPly + 1]] = move;
-
-        /*
-         * If the move is a killer move, add a bonus to the move ordering score
-         * Otherwise set the move ordering score to the history score value of this move
-         */
-        if (move == searchKillers[comPly]) {
-            moveScores[moveListStart[comPly + 1]++] = 900000;
-        } else if (move == searchKillers[MAX_DEPTH + comPly]) {
-            moveScores[moveListStart[comPly + 1]++] = 800000;
-        } else {
-            moveScores[moveListStart[comPly + 1]++] = searchHistory[board[getFromSq(move)] * BOARD_SQUARES + getToSq(move)];
-        }
-    }
-
-    /**
-     * Add an en passant move
-     * @param move move of integer format
-     */
-    private void addEnPassantMove(int move) {
-        /*
-         * The en passant move is always a capture of pawn takes pawn, so the MvvLva score is always 105 + the 1000000 base
-         */
-        moveList[moveListStart[comPly + 1]] = move;
-        moveScores[moveListStart[comPly + 1]++] = 1000105;
-    }
-
-    /**
-     * Generate all possible capture moves
-     */
-    private void generateCaptureMoves() {
-        moveListStart[comPly + 1] = moveListStart[comPly]; //Update the move list
-        byte piece;
-
-        /*
-         * Check the side dependent pawn captures first
-         */
-        if (side == WHITE) {
-            piece = wP;
-            for (int i = 0; i < numPieces[piece]; i++) { //Loop through all of the squares with this piece
-                byte sq = pieceListSquare[piece * 10 + i];
-                /*
-                 * Check if there is a black on the diagonal tiles
-                 * If the pawn is on the 7th rank add promotion moves
-                 */
-                if (board[sq + 9] != OFFBOARD && colPieces[board[sq + 9]] == BLACK) {
-                    if (getRank[sq] == 6) {
-                        addCaptureMove(getMove(sq, sq + 9, board[sq + 9], wN, 0));
-                        addCaptureMove(getMove(sq, sq + 9, board[sq + 9], wB, 0));
-                        addCaptureMove(getMove(sq, sq + 9, board[sq + 9], wR, 0));
-                        addCaptureMove(getMove(sq, sq + 9, board[sq + 9], wQ, 0));
-                    } else {
-                        addCaptureMove(getMove(sq, sq + 9, board[sq + 9], EMPTY, 0));
-                    }
-                }
-                if (board[sq + 11] != OFFBOARD && colPieces[board[sq + 11]] == BLACK) {
-                    if (getRank[sq] == 6) {
-                        addCaptureMove(getMove(sq, sq + 11, board[sq + 11], wN, 0));
-                        addCaptureMove(getMove(sq, sq + 11, board[sq + 11], wB, 0));
-                        addCaptureMove(getMove(sq, sq + 11, board[sq + 11], wR, 0));
-                        addCaptureMove(getMove(sq, sq + 11, board[sq + 11], wQ, 0));
-                    } else {
-                        addCaptureMove(getMove(sq, sq + 11, board[sq + 11], EMPTY, 0));
-                    }
-                }
-
-                /*
-                 * Check if the en passant square is available for capture
-                 */
-                if (enPas != NO_SQ) {
-                    if (enPas == sq + 9) {
-                        addEnPassantMove(getMove(sq, sq + 9, EMPTY, EMPTY, MFLAG_ENPASSANT));
-                    } else if (enPas == sq + 11) {
-                        addEnPassantMove(getMove(sq, sq + 11, EMPTY, EMPTY, MFLAG_ENPASSANT));
-                    }
-                }
-            }
-
-            /*
-             * Set the piece to a white knight
-             */
-            piece = wN;
-        } else {
-            piece = bP;
-
-            /*
-             * Same for black
-             */
-
-            for (int i = 0; i < numPieces[piece]; i++) {
-                byte sq = pieceListSquare[piece * 10 + i];
-                if (board[sq - 9] != OFFBOARD && colPieces[board[sq - 9]] == WHITE) {
-                    if (getRank[sq] == 2) {
-                        addCaptureMove(getMove(sq, sq - 9, board[sq - 9], bN, 0));
-                        addCaptureMove(getMove(sq, sq - 9, board[sq - 9], bB, 0));
-                        addCaptureMove(getMove(sq, sq - 9, board[sq - 9], bR, 0));
-                        addCaptureMove(getMove(sq, sq - 9, board[sq - 9], bQ, 0));
-                    } else {
-                        addCaptureMove(getMove(sq, sq - 9, board[sq - 9], EMPTY, 0));
-                    }
-                }
-                if (board[sq - 11] != OFFBOARD && colPieces[board[sq - 11]] == WHITE) {
-                    if (getRank[sq] == 2) {
-                        addCaptureMove(getMove(sq, sq - 11, board[sq - 11], bN, 0));
-                        addCaptureMove(getMove(sq, sq - 11, board[sq - 11], bB, 0));
-                        addCaptureMove(getMove(sq, sq - 11, board[sq - 11], bR, 0));
-                        addCaptureMove(getMove(sq, sq - 11, board[sq - 11], bQ, 0));
-                    } else {
-                        addCaptureMove(getMove(sq, sq - 11, board[sq - 11], EMPTY, 0));
-                    }
-                }
-                if (enPas != NO_SQ) {
-                    if (enPas == sq - 9) {
-                        addEnPassantMove(getMove(sq, sq - 9, EMPTY, EMPTY, MFLAG_ENPASSANT));
-                    } else if (enPas == sq - 11) {
-                        addEnPassantMove(getMove(sq, sq - 11, EMPTY, EMPTY, MFLAG_ENPASSANT));
-                    }
-                }
-            }
-
-            /*
-             * Set the piece to a black knight
-             */
-            piece = bN;
-        }
-
-        /*
-         * Now the piece is equal to a knight of the side to move
-         * Loop through all of the pieces until you pass the king of the color.
-         * The king's piece number is 6 or 12, so the next piece is 7 or 13.
-         * While the remainder is not 1 (i. e. the piece number is not 7 or 13)
-         * Increment and loop through the pieces.
-         * This will loop through all the non pawn pieces of the color to move.
-         */
-
-        while (piece % 6 != 1) {
-            /*
-             * Loop through all the squares for this type
-             */
-            for (int i = 0; i < numPieces[piece]; i++) {
-                int sq = pieceListSquare[piece * 10 + i];
-
-                /*
-                 * Loop through all the directions for this piece
-                 */
-                for (int d = 0; d < pieceDir[piece].length; d++) {
-                    int dir = pieceDir[piece][d];
-                    int t_sq = sq + dir;
-
-                    /*
-                     * If it's a sliding piece continue until it hits either a piece or the end of the board.
-                     * If it's a piece of the opposite color it can be captured.
-                     */
-                    if (slidePiece[piece]) {
-                        while (board[t_sq] != OFFBOARD) {
-                            if (board[t_sq] != EMPTY) {
-                                if (colPieces[board[t_sq]] != side) {
-                                    addCaptureMove(getMove(sq, t_sq, board[t_sq], EMPTY, 0));
-                                }
-                                break;
-                            }
-                            t_sq += dir;
-                        }
-                    } else {
-                        if (board[t_sq] != OFFBOARD) {
-                            if (board[t_sq] != EMPTY && colPieces[board[t_sq]] != side) {
-                                addCaptureMove(getMove(sq, t_sq, board[t_sq], EMPTY, 0));
-                            }
-                        }
-                    }
-                }
-            }
-            piece++;
-        }
-    }
-
-    /**
-     * Generate all possible moves
-     */
-    private void generateMoves() {
-        moveListStart[comPly + 1] = moveListStart[comPly]; // Update the move list
-        byte piece;
-
-        if (side == WHITE) {
-            piece = wP;
-
-            for (int i = 0; i < numPieces[piece]; i++) {
-                byte sq = pieceListSquare[piece * 10 + i];
-                /*
-                 * If the square in front of a pawn is empty, add a pawn move
-                 */
-                if (board[sq + 10] == EMPTY) {
-                    if (getRank[sq] == 1 && board[sq + 20] == EMPTY) {
-                        /*
-                         * If the pawn is on the 2nd rank, add a pawn move,
-                         * and a pawn start move if the square 2 tiles in front is empty
-                         */
-                        addQuietMove(getMove(sq, sq + 10, EMPTY, EMPTY, 0));
-                        addQuietMove(getMove(sq, sq + 20, EMPTY, EMPTY, MFLAG_PAWNSTART));
-                    } else if (getRank[sq] == 6) {
+            } else if (line.startsWith("perft ") || line.startsWith("divide ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
+                } else {
+                    try {
                         /*
-                         * If the pawn is on the 7th rank add promotion moves
+                         * Try to read the depth and run perft in a new thread
                          */
-                        addQuietMove(getMove(sq, sq + 10, EMPTY, wN, 0));
-                        addQuietMove(getMove(sq, sq + 10, EMPTY, wB, 0));
-                        addQuietMove(getMove(sq, sq + 10, EMPTY, wR, 0));
-                        addQuietMove(getMove(sq, sq + 10, EMPTY, wQ, 0));
-                    } else {
-                        addQuietMove(getMove(sq, sq + 10, EMPTY, EMPTY, 0));
-                    }
-                }
-                /*
-                 * Same as for capture moves
-                 */
-                if (board[sq + 9] != OFFBOARD && colPieces[board[sq + 9]] == BLACK) {
-                    if (getRank[sq] == 6) {
-                        addCaptureMove(getMove(sq, sq + 9, board[sq + 9], wN, 0));
-                        addCaptureMove(getMove(sq, sq + 9, board[sq + 9], wB, 0));
-                        addCaptureMove(getMove(sq, sq + 9, board[sq + 9], wR, 0));
-                        addCaptureMove(getMove(sq, sq + 9, board[sq + 9], wQ, 0));
-                    } else {
-                        addCaptureMove(getMove(sq, sq + 9, board[sq + 9], EMPTY, 0));
-                    }
-                }
-                if (board[sq + 11] != OFFBOARD && colPieces[board[sq + 11]] == BLACK) {
-                    if (getRank[sq] == 6) {
-                        addCaptureMove(getMove(sq, sq + 11, board[sq + 11], wN, 0));
-                        addCaptureMove(getMove(sq, sq + 11, board[sq + 11], wB, 0));
-                        addCaptureMove(getMove(sq, sq + 11, board[sq + 11], wR, 0));
-                        addCaptureMove(getMove(sq, sq + 11, board[sq + 11], wQ, 0));
-                    } else {
-                        addCaptureMove(getMove(sq, sq + 11, board[sq + 11], EMPTY, 0));
-                    }
-                }
-                if (enPas != NO_SQ) {
-                    if (enPas == sq + 9) {
-                        addEnPassantMove(getMove(sq, sq + 9, EMPTY, EMPTY, MFLAG_ENPASSANT));
-                    } else if (enPas == sq + 11) {
-                        addEnPassantMove(getMove(sq, sq + 11, EMPTY, EMPTY, MFLAG_ENPASSANT));
+                        final boolean divide = line.startsWith("divide ");
+                        final int d = Integer.parseInt(line.substring(divide ? 7 : 6));
+                        if (d > 0) {
+                            processThread = new ProcessThread() {
+                                public void run() {
+                                    chess.searcher.runPerft(d, divide);
+                                }
+                            };
+                            processThread.start();
+                        }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
                     }
                 }
-            }
-
-            /*
-             * If white can castle king side and the space in between is empty, add a castle move
-             */
-            if ((castlePerm & WKCA) != 0) {
-                if (board[F1] == EMPTY && board[G1] == EMPTY) {
-                    if (!isAttacked(F1, BLACK) && !isAttacked(E1, BLACK)) {
+            } else if (line.startsWith("pperft ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
+                } else {
+                    try {
                         /*
-                         * White can castle king side
+                         * Try to read the depth and the optional split depth, and run the parallel perft in a new thread
                          */
-                        addQuietMove(getMove(E1, G1, EMPTY, EMPTY, MFLAG_CASTLE));
+                        String[] args2 = line.substring(7).trim().split(" +");
+                        final int d = Integer.parseInt(args2[0]);
+                        final int split = args2.length > 1 ? Integer.parseInt(args2[1]) : 1;
+                        if (d > 0 && split > 0) {
+                            processThread = new ProcessThread() {
+                                public void run() {
+                                    chess.searcher.runParallelPerft(d, split);
+                                }
+                            };
+                            processThread.start();
+                        }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
                     }
                 }
-            }
-
-            /*
-             * If white can castle queen side and the space in between is empty, add a castle move
-             */
-            if ((castlePerm & WQCA) != 0) {
-                if (board[B1] == EMPTY && board[C1] == EMPTY && board[D1] == EMPTY) {
-                    if (!isAttacked(D1, BLACK) && !isAttacked(E1, BLACK)) {
+            } else if (line.startsWith("perfthash ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
+                } else {
+                    try {
                         /*
-                         * White can castle queen side
+                         * Try to read the size and reallocate or turn off the perft hash table
                          */
-                        addQuietMove(getMove(E1, C1, EMPTY, EMPTY, MFLAG_CASTLE));
-                    }
-                }
-            }
-
-            piece = wN;
-        } else {
-            /*
-             * Same for black
-             */
-            piece = bP;
-
-            for (int i = 0; i < numPieces[piece]; i++) {
-                byte sq = pieceListSquare[piece * 10 + i];
-                if (board[sq - 10] == EMPTY) {
-                    if (getRank[sq] == 6 && board[sq - 20] == EMPTY) {
-                        addQuietMove(getMove(sq, sq - 20, EMPTY, EMPTY, MFLAG_PAWNSTART));
-                        addQuietMove(getMove(sq, sq - 10, EMPTY, EMPTY, 0));
-                    } else if (getRank[sq] == 1) {
-                        addQuietMove(getMove(sq, sq - 10, EMPTY, bN, 0));
-                        addQuietMove(getMove(sq, sq - 10, EMPTY, bB, 0));
-                        addQuietMove(getMove(sq, sq - 10, EMPTY, bR, 0));
-                        addQuietMove(getMove(sq, sq - 10, EMPTY, bQ, 0));
-                    } else {
-                        addQuietMove(getMove(sq, sq - 10, EMPTY, EMPTY, 0));
-                    }
-                }
-                if (board[sq - 9] != OFFBOARD && colPieces[board[sq - 9]] == WHITE) {
-                    if (getRank[sq] == 1) {
-                        addCaptureMove(getMove(sq, sq - 9, board[sq - 9], bN, 0));
-                        addCaptureMove(getMove(sq, sq - 9, board[sq - 9], bB, 0));
-                        addCaptureMove(getMove(sq, sq - 9, board[sq - 9], bR, 0));
-                        addCaptureMove(getMove(sq, sq - 9, board[sq - 9], bQ, 0));
-                    } else {
-                        addCaptureMove(getMove(sq, sq - 9, board[sq - 9], EMPTY, 0));
-                    }
-                }
-                if (board[sq - 11] != OFFBOARD && colPieces[board[sq - 11]] == WHITE) {
-                    if (getRank[sq] == 1) {
-                        addCaptureMove(getMove(sq, sq - 11, board[sq - 11], bN, 0));
-                        addCaptureMove(getMove(sq, sq - 11, board[sq - 11], bB, 0));
-                        addCaptureMove(getMove(sq, sq - 11, board[sq - 11], bR, 0));
-                        addCaptureMove(getMove(sq, sq - 11, board[sq - 11], bQ, 0));
-                    } else {
-                        addCaptureMove(getMove(sq, sq - 11, board[sq - 11], EMPTY, 0));
+                        final int mb = Integer.parseInt(line.substring(10));
+                        if (mb >= 0) {
+                            chess.searcher.initPerftHash(mb);
+                            System.out.println("Perft hash: " + mb + " MB");
+                        }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
                     }
                 }
-                if (enPas != NO_SQ) {
-                    if (enPas == sq - 9) {
-                        addEnPassantMove(getMove(sq, sq - 9, EMPTY, EMPTY, MFLAG_ENPASSANT));
-                    } else if (enPas == sq - 11) {
-                        addEnPassantMove(getMove(sq, sq - 11, EMPTY, EMPTY, MFLAG_ENPASSANT));
+            } else if (line.startsWith("perftsuite ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
+                } else {
+                    try {
+                        /*
+                         * Try to read the depth and run the perft suite in a new thread
+                         */
+                        final int d = Integer.parseInt(line.substring(11));
+                        if (d > 0) {
+                            processThread = new ProcessThread() {
+                                public void run() {
+                                    running = true;
+                                    chess.runPerftSuite(d, this);
+                                }
+                            };
+                            processThread.start();
+                        }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
                     }
                 }
-            }
-
-            if ((castlePerm & BKCA) != 0) {
-                if (board[F8] == EMPTY && board[G8] == EMPTY) {
-                    if (!isAttacked(F8, WHITE) && !isAttacked(E8, WHITE)) {
+            } else if (line.equals("bench") || line.startsWith("bench ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
+                } else {
+                    try {
                         /*
-                         * Black can castle king side
+                         * Try to read the optional depth and run the bench in a new thread
                          */
-                        addQuietMove(getMove(E8, G8, EMPTY, EMPTY, MFLAG_CASTLE));
+                        final int d = line.length() > 5 ? Integer.parseInt(line.substring(6).trim()) : BENCH_DEPTH;
+                        if (d > 0) {
+                            processThread = new ProcessThread() {
+                                public void run() {
+                                    running = true;
+                                    chess.runBench(d, this);
+                                }
+                            };
+                            processThread.start();
+                        }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
                     }
                 }
-            }
-            if ((castlePerm & BQCA) != 0) {
-                if (board[B8] == EMPTY && board[C8] == EMPTY && board[D8] == EMPTY) {
-                    if (!isAttacked(D8, WHITE) && !isAttacked(E8, WHITE)) {
+            } else if (line.startsWith("evalbench ")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
+                } else {
+                    try {
                         /*
-                         * Black can castle queen side
+                         * Try to read the number of evaluations and run the evaluation benchmark in a new thread
                          */
-                        addQuietMove(getMove(E8, C8, EMPTY, EMPTY, MFLAG_CASTLE));
+                        final long count = Long.parseLong(line.substring(10).trim());
+                        if (count > 0) {
+                            processThread = new ProcessThread() {
+                                public void run() {
+                                    running = true;
+                                    chess.runEvalBench(count, this);
+                                }
+                            };
+                            processThread.start();
+                        }
+                    } catch (NumberFormatException e) {
+                        System.out.println("Invalid Number!");
+                    }
+                }
+            } else if (line.equals("uci")) {
+                if (processThread != null && processThread.isAlive()) {
+                    System.out.println("You already have a process running!");
+                } else {
+                    /*
+                     * Hand the input over to the UCI protocol, and exit when it is done
+                     */
+                    chess.uciLoop(input);
+                    reading = false;
+                }
+            } else if (line.startsWith("stop")) {
+                if (processThread == null) {
+                    System.out.println("No processes running!");
+                } else {
+                    /*
+                     * Stop the process from running and end the search.
+                     * Join the thread.
+                     */
+                    int stops = chess.searcher.stopCount;
+                    processThread.running = false;
+                    chess.searcher.requestStop();
+                    try {
+                        processThread.join();
+                    } catch (Exception e) {
+                        e.printStackTrace();
                     }
+                    if (chess.searcher.stopCount > stops) System.out.println(chess.searcher.getStopLatency());
                 }
+            } else {
+                System.out.println("Invalid command!");
             }
-
-            piece = bN;
         }
 
         /*
-         * Same loop as for capture moves
+         * Stop the program
          */
+        chess.stop();
+    }
+    /**
+     * Chess object initialization
+     */
+    private Chess() {
+        position = new Position();
+        searcher = new Searcher(position);
+        searcher.printSearch = true;
+        gameStatus = RUNNING;
+        clock = new long[2];
+        playerMove = true;
+    }
 
-        while (piece % 6 != 1) {
+    /**
+     * Attach a gui window to the engine.
+     * If the gui can not be created, because the resources fail to load or there is no display,
+     * the engine keeps running headless.
+     */
+    private void attachGui() {
+        try {
+            gui = new Gui(this);
+        } catch (IOException | IllegalArgumentException | UnsupportedOperationException e) {
             /*
-             * Loop through all the squares for this type
+             * IllegalArgumentException is thrown by ImageIO for a missing resource,
+             * and HeadlessException (an UnsupportedOperationException) when there is no display
              */
-            for (int i = 0; i < numPieces[piece]; i++) {
-                int sq = pieceListSquare[piece * 10 + i];
-
-                /*
-                 * Loop through all the directions for this piece
-                 */
-                for (int d = 0; d < pieceDir[piece].length; d++) {
-                    int dir = pieceDir[piece][d];
-                    int t_sq = sq + dir;
-
-                    /*
-                     * If it's a sliding piece continue until it hits either a piece or the end of the board.
-                     * If it's an empty square it can move there, and if there is a piece of the opposite color there
-                     * it can be captured.
-                     */
-                    if (slidePiece[piece]) {
-                        while (board[t_sq] != OFFBOARD) {
-                            if (board[t_sq] == EMPTY) {
-                                addQuietMove(getMove(sq, t_sq, EMPTY, EMPTY, 0));
-                            } else {
-                                if (colPieces[board[t_sq]] != side) {
-                                    addCaptureMove(getMove(sq, t_sq, board[t_sq], EMPTY, 0));
-                                }
-                                break;
-                            }
-                            t_sq += dir;
-                        }
-                    } else {
-                        if (board[t_sq] != OFFBOARD) {
-                            if (board[t_sq] == EMPTY) {
-                                addQuietMove(getMove(sq, t_sq, EMPTY, EMPTY, 0));
-                            } else if (colPieces[board[t_sq]] != side) {
-                                addCaptureMove(getMove(sq, t_sq, board[t_sq], EMPTY, 0));
-                            }
-                        }
-                    }
-                }
-            }
-            piece++;
+            System.out.println("Notice: Could not start the gui, running headless: " + e);
+            gui = null;
         }
     }
 
     /**
-     * Check if the position has occurred earlier
-     * @return boolean if it is a repetition
+     * Stop the gui and renderer from running
      */
-    private boolean isRepetition() {
-        /*
-         * Loop through all the positions down to the last time the fifty move count was reset,
-         * because if a pawn moves or a piece is captured the position can not occur again
-         */
-        for (int i = numPly - fiftyMove; i < numPly - 1; i++) {
-            if (posKey == historyPosKey[i]) return true;
+    private void stop() {
+        if (gui != null) {
+            gui.stop();
+            gui = null;
         }
-        return false;
     }
 
     /**
-     * Order the move list so that the next move in the list is the one with the highest score
-     * @param moveNum the move list index start position
+     * Set the title of the gui window, if there is a gui
+     *
+     * @param title the title
      */
-    private void pickNextMove(int moveNum) {
-        int bestscore = -INF;
-        int bestNum = moveNum;
-
-        /*
-         * Loop through all the moves after this one in the move list, and find the one with the best score
-         */
-        for (int i = moveNum; i < moveListStart[comPly + 1]; i++) {
-            if (moveScores[i] > bestscore) {
-                bestscore = moveScores[i];
-                bestNum = i;
-            }
-        }
-
-        /*
-         * Swap the move on top of the list with the best one, so that the next move search will be the best one
-         */
-        if (bestNum != moveNum) {
-            int tmp = moveScores[moveNum];
-            moveScores[moveNum] = moveScores[bestNum];
-            moveScores[bestNum] = tmp;
-            tmp = moveList[moveNum];
-            moveList[moveNum] = moveList[bestNum];
-            moveList[bestNum] = tmp;
-        }
+    private void setTitle(String title) {
+        if (gui != null) gui.setTitle(title);
     }
 
     /**
-     * Recursive method for calculating the best score after a given depth using alpha beta search
-     * @param alpha the current max for the maximizer
-     * @param beta the current min for the minimizer
-     * @param depth the current depth
-     * @return the best score
+     * Set the board to a position and start a new game from it
+     *
+     * @param fen the fen string of the position
      */
-    private int alphaBeta(int alpha, int beta, int depth) {
-        searchnodes++;
-
-        /*
-         * If the search is over return the position evaluation
-         */
-        if (!searching) return evaluatePosition();
-
-        /*
-         * If the depth is zero, calculate capture moves to avoid the horizon effect
-         */
-        if (depth <= 0) {
-            return quiescence(alpha, beta);
-        }
-
-        /*
-         * If it's a repetition or more than fifty moves, the score is a draw
-         */
-        if ((isRepetition() || fiftyMove >= 100) && comPly != 0) return 0;
-
-        /*
-         * If the minimizer's lowest is better than a mate, return it
-         */
-        if (beta <= -MATE_SCORE) {
-            return beta;
-        }
-
-        /*
-         * If we have reached the max depth, return the position evaluation
-         */
-        if (comPly > MAX_DEPTH - 1) {
-            return evaluatePosition();
-        }
-
-        /*
-         * If the king is in check, increase the depth, to avoid missing forcing lines that lead to mate
-         */
-        boolean inCheck = isAttacked(pieceListSquare[sidesKings[side] * 10], side ^ 1);
-        if (inCheck) {
-            depth++;
-        }
-
-        int score;
-        generateMoves();
-        int legalmove = 0;
-        int bestMove = 0;
-        int alphaold = alpha;
-
-        /*
-         * Start searching the primary variation first, because the primary variation of previous depths
-         * is most likely to be good the next depth as well
-         * Search through all the moves and see if it's the primary variation
-         */
-        int pvMove = getPVMove();
-        if (pvMove != 0) {
-            for (int i = moveListStart[comPly]; i < moveListStart[comPly + 1]; i++) {
-                if (moveList[i] == pvMove) {
-                    moveScores[i] = 2000000;
-                    break;
-                }
-            }
-        }
-
-        /*
-         * Loop through all of the moves, and pick the one with the highest score
-         */
-        for (int i = moveListStart[comPly]; i < moveListStart[comPly + 1]; i++) {
-            pickNextMove(i);
-            int move = moveList[i];
-            if (makeMove(move)) {
-                /*
-                 * If the move was legal, set the score to the opposite alpha beta search for the next depth,
-                 * because every other move the players want to min and max their results.
-                 * Revert the move afterwards.
-                 */
-                legalmove++;
-                score = -alphaBeta(-beta, -alpha, depth - 1);
-                revertMove();
-
-                /*
-                 * If the score is better than the current best, update the current best, and check if we have a beta
-                 * cut off. If the move is a non capture one, it's classified as a killer move, and added to the killer
-                 * move list. Otherwise, the add the score in the form of the depth * depth to the move score.
-                 * This means that if a move is good in many positions, it will most likely be good in this position as
-                 * well. Return the beta score if we had a beta cut off, because that is the best possible score.
-                 */
-                if (score > alpha) {
-                    if (score >= beta) {
-                        if (legalmove == 1) {
-                            searchbcf++;
-                        }
-                        searchbc++;
-                        if ((move & MFLAG_CAPTURE) == 0) {
-                            searchKillers[MAX_DEPTH + comPly] = searchKillers[comPly];
-                            searchKillers[comPly] = move;
-                        }
-                        return beta;
-                    }
-                    if ((move & MFLAG_CAPTURE) == 0) {
-                        searchHistory[board[getFromSq(move)] * BOARD_SQUARES + getToSq(move)] += depth * depth;
-                    }
-                    alpha = score;
-                    bestMove = move;
-                }
-            }
-        }
+    private void setBoard(String fen) {
+        position.parseFen(fen);
+        gameStatus = RUNNING;
+    }
 
+    /**
+     * Print the board and the status of the game to the console
+     */
+    private void printBoard() {
         /*
-         * If there was no legal moves, return mate score if the king is in check, otherwise return 0 for a draw
+         * Whenever we call the printBoard function we also want to show the board on the screen, in case
+         * it is missed by the rendering window in between searches
          */
-        if (legalmove == 0) {
-            if (inCheck) {
-                return -MATE_SCORE + comPly;
-            } else {
-                return 0;
-            }
-        }
+        if (gui != null) gui.render();
 
-        /*
-         * If the alpha was improved, store this move in the primary variation
-         */
-        if (alpha != alphaold) {
-            storePVMove(bestMove);
-        }
+        System.out.println();
+        System.out.println("Status: " + gameStatus);
+        position.printBoard();
+    }
 
-        /*
-         * Return the best possible score
-         */
-        return alpha;
+    /**
+     * Search the current position from the start depth to the end depth, with the player input disabled
+     * while searching
+     *
+     * @param start the start depth
+     * @param depth the end depth
+     * @return the best move of integer format
+     */
+    private int searchPosition(int start, int depth) {
+        playerMove = false;
+        int bestMove = searcher.searchPosition(start, depth);
+        int score = searcher.getSearchScore();
+        setTitle((position.side == BLACK ? "White" : position.side == WHITE ? "Black" : "None") + " to move. Score: " + (position.side == BLACK ? -score : score)); // Update the title
+        playerMove = true;
+        return bestMove;
     }
 
     /**
-     * Recursively calculate the quiescence score the same way as alpha beta, except calculate only capture moves.
-     * This is to avoid the horizon effect
-     * @param alpha the maximizers best score
-     * @param beta the minimizers best score
-     * @return the best possible score
+     * Check the current status of the board
+     * @return boolean if the game is still running
      */
-    private int quiescence(int alpha, int beta) {
+    private boolean checkStatus() {
         /*
-         * This method works exactly like alpha beta
+         * If the fifty move rule has been reach it's a draw
          */
-        searchnodes++;
-
-        if (!searching) return evaluatePosition();
-
-        if ((isRepetition() || fiftyMove >= 100) && comPly != 0) return 0;
-
-        if (comPly > MAX_DEPTH - 1) {
-            return evaluatePosition();
-        }
-
-        int score = evaluatePosition();
-
-        if (score >= beta) {
-            return beta;
-        }
-
-        if (score > alpha) {
-            alpha = score;
-        }
-
-        generateCaptureMoves();
-        int legalmove = 0;
-        int bestMove = 0;
-        int alphaold = alpha;
-
-        for (int i = moveListStart[comPly]; i < moveListStart[comPly + 1]; i++) {
-            pickNextMove(i);
-            int move = moveList[i];
-            if (makeMove(move)) {
-                legalmove++;
-                score = -quiescence(-beta, -alpha);
-                revertMove();
-                if (score > alpha) {
-                    if (score >= beta) {
-                        if (legalmove == 1) {
-                            searchbcf++;
-                        }
-                        searchbc++;
-                        return beta;
-                    }
-                    alpha = score;
-                    bestMove = move;
-                }
-            }
+        if (position.fiftyMove >= 100) {
+            gameStatus = DRAW + " - 50 moves";
+            return false;
         }
 
-        if (alpha != alphaold) {
-            storePVMove(bestMove);
+        /*
+         * If the same position has been repeated 3 times it's a draw
+         */
+        int reps = 0;
+        for (int i = position.numPly - 1; i >= 0; i--) {
+            if (position.historyPosKey[i] == position.posKey) reps++;
+        }
+        if (reps >= 3) {
+            gameStatus = DRAW + " - Repetitions";
+            return false;
         }
 
-        return alpha;
-    }
-
-    /**
-     * Clear the currently stored primary variation
-     */
-    private void clearPrimaryVariation() {
         /*
-         * Loop through all the primary variation entries and set them to 0
+         * If there is insufficient mating material it's a draw
          */
-        for (int i = 0; i < PV_ENTRIES; i++) {
-            primaryVariationMove[i] = 0;
-            primaryVariationPositionKey[i] = 0;
+        if (!(position.numPieces[wP] > 0 || position.numPieces[bP] > 0 || position.numPieces[wR] > 0 || position.numPieces[bR] > 0 || position.numPieces[wQ] > 0 || position.numPieces[bQ] > 0 || position.numPieces[wB] + position.numPieces[wN] >= 2 || position.numPieces[bB] + position.numPieces[bN] >= 2)) {
+            gameStatus = DRAW;
+            return false;
         }
-    }
 
-    /**
-     * Clear the board variables for search
-     */
-    private void clearForSearch() {
         /*
-         * Clear the search history and the killer moves
+         * If there are no legal moves the game is over, and is mate if the king is attacked, otherwise a stale mate
          */
-        for (int i = 0; i < 13 * BOARD_SQUARES; i++) {
-            searchHistory[i] = 0;
-        }
-        for (int i = 0; i < 2 * MAX_DEPTH; i++) {
-            searchKillers[i] = 0;
+        searcher.generateLegalMoves();
+        int legalMoves = searcher.moveListStart[position.comPly + 1] - searcher.moveListStart[position.comPly];
+        if (legalMoves == 0) {
+            if (position.plyCheckers[position.comPly] != 0) {
+                gameStatus = MATE;
+            } else {
+                gameStatus = STALEMATE;
+            }
+            return false;
         }
-        clearPrimaryVariation();
-        comPly = 0;
-        searchbc = 0;
-        searchbcf = 0;
-        searchnodes = 0;
+
+        return true;
     }
 
     /**
-     * Search the current position from the start depth to the end depth
-     * @param start the start depth
-     * @param depth the end depth
+     * Search the position by the clock of the side to move, and update the clock with the time used and the increment.
+     * If the clocks are not set, the position is searched to the depth.
+     *
+     * @param depth the maximum depth to search to
      * @return the best move of integer format
      */
-    private int searchPosition(int start, int depth) {
-        /*
-         * While searching disable the rendering and player input
-         */
-        searching = true;
-        playerMove = false;
-
-        /*
-         * Input validation
-         */
-        if (start > depth) start = depth;
-        if (start < 1) start = 1;
-        searchdepth = depth;
-        int bestMove = 0;
-        int bestScore;
-        int currentDepth;
-
-        clearForSearch();
+    private int searchByClock(int depth) {
+        if (clock[position.side] <= 0) return searchPosition(depth, depth);
 
-        /*
-         * Loop through the different depths and search them
-         */
-        for (currentDepth = start; currentDepth <= searchdepth; currentDepth++) {
-            if (!searching) break; // Stop searching
+        searcher.setTimeLimits(clock[position.side], clockInc, 0, 0);
+        byte mover = position.side;
+        long start = System.currentTimeMillis();
+        searcher.startClock();
+        int move = searchPosition(1, depth);
+        clock[mover] += clockInc - (System.currentTimeMillis() - start);
+        searcher.setTimeLimits(0, 0, 0, 0);
 
-            /*
-             * Get the best possible score and print the primary variation to the screen
-             */
-            bestScore = alphaBeta(-INF, INF, currentDepth);
-            bestMove = getPVMove();
-            String line = "D" + currentDepth;
+        if (searcher.printSearch) System.out.println((mover == WHITE ? "White" : "Black") + " clock: " + clock[mover] + " ms");
+        if (clock[mover] <= 0) System.out.println((mover == WHITE ? "White" : "Black") + " lost on time!");
+        return move;
+    }
 
-            /*
-             * If the score is a mate score, show the number of moves until mate
-             */
-            if (Math.abs(bestScore) >= MATE_SCORE - MAX_DEPTH) {
-                line += " Mate in " + (MATE_SCORE - Math.abs(bestScore)) + " nodes: " + searchnodes;
-            } else {
-                line += " Score: " + bestScore + " nodes: " + searchnodes;
-            }
-            double rat = searchbcf * 1.0 / searchbc;
-            int pct = (int) Math.round(rat * 100.0);
-            line += " Ordering: " + pct + "%";
-            line += " Best: ";
-            int n = getPvLine(currentDepth);
-            for (int c = 0; c < n; c++) {
-                line += " " + moveToString(primaryVariation[c]);
+    /**
+     * Measure the time to depth of the search with 1, 2, 4, 8 and 16 threads over a set of positions.
+     * Every position is searched with iterative deepening, like a normal search, and the tables are cleared
+     * before each search so that every search starts from the same state.
+     * The lazy SMP timing is not deterministic, so the set is searched SMP_BENCH_RUNS times for each
+     * thread count, and the median time is reported and used for the speedup.
+     * The board is set to the start position afterwards.
+     *
+     * @param depth the depth to search each position to
+     * @param process the process running the benchmark, stops the benchmark when it is no longer running
+     */
+    private void benchmarkThreads(int depth, ProcessThread process) {
+        String[] fens = {
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8",
+                "2rq1rk1/pb1nbppp/1p2pn2/2pp4/2PP4/1PN1PN2/PB2BPPP/R2Q1RK1 w - - 0 11",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+        };
+        int[] threadCounts = {1, 2, 4, 8, 16};
+
+        int oldThreads = searcher.threads;
+        searcher.printSearch = false;
+        long baseTime = 0;
+        for (int t = 0; t < threadCounts.length && process.running; t++) {
+            searcher.threads = threadCounts[t];
+            long[] times = new long[SMP_BENCH_RUNS];
+            long nodes = 0;
+            for (int run = 0; run < SMP_BENCH_RUNS && process.running; run++) {
+                long start = System.currentTimeMillis();
+                for (int i = 0; i < fens.length && process.running; i++) {
+                    setBoard(fens[i]);
+                    searcher.clearTables();
+                    searchPosition(1, depth);
+                    nodes += searcher.getSearchNodes();
+                }
+                times[run] = Math.max(System.currentTimeMillis() - start, 1);
             }
-            frame.setTitle((side == BLACK ? "White" : side == WHITE ? "Black" : "None") + " to move. Score: " + (side == BLACK ? -bestScore : bestScore)); // Update the title
-            System.out.println(line);
-        }
+            if (!process.running) break;
 
-        /*
-         * Allow for rendering and player moves
-         */
-        searching = false;
-        playerMove = true;
-        return bestMove;
+            long total = 0;
+            for (long time : times) {
+                total += time;
+            }
+            Arrays.sort(times);
+            long median = times[SMP_BENCH_RUNS / 2];
+            if (t == 0) baseTime = median;
+            System.out.printf("Threads: %2d Time: %7d ms (min %d max %d) Nodes: %10d Nps: %9d Speedup: %.2f\n",
+                    searcher.threads, median, times[0], times[SMP_BENCH_RUNS - 1], nodes / SMP_BENCH_RUNS,
+                    nodes * 1000 / total, baseTime * 1.0 / median);
+        }
+
+        searcher.threads = oldThreads;
+        searcher.printSearch = true;
+        setBoard(fens[0]);
+        searcher.clearTables();
     }
 
     /**
-     * Simple heuristic function for evaluating the position
+     * Run the engine with the UCI protocol, reading commands until the input ends or quit is read
      *
-     * @return the evaluation score
-     */
-    private int evaluatePosition() {
-        /*
-         * Scores for black are subtracted and scores for white are added
-         * Start by adding together the material scores
-         */
-        int score = material[WHITE] - material[BLACK];
-
-        /*
-         * Loop through all the pieces and add the value they get when they are on a spesific square
-         */
-        byte piece = wP;
-        for (int i = 0; i < numPieces[piece]; i++) {
-            byte sq = pieceListSquare[piece * 10 + i];
-            score += pawnScoreTable[getSquare64[sq]];
-        }
-
-        piece = bP;
-        for (int i = 0; i < numPieces[piece]; i++) {
-            byte sq = pieceListSquare[piece * 10 + i];
-            score -= pawnScoreTable[mirror64[getSquare64[sq]]];
+     * @param input the scanner to read the commands from
+     */
+    private void uciLoop(Scanner input) {
+        searcher.uciMode = true;
+        printUciId();
+        ProcessThread searchThread = null;
+
+        while (input.hasNextLine()) {
+            String line = input.nextLine().trim();
+            if (line.equals("uci")) {
+                printUciId();
+            } else if (line.equals("isready")) {
+                System.out.println("readyok");
+            } else if (line.equals("ucinewgame")) {
+                stopUciSearch(searchThread);
+                setBoard(START_FEN);
+                searcher.clearHashTable();
+            } else if (line.startsWith("position")) {
+                stopUciSearch(searchThread);
+                parseUciPosition(line);
+            } else if (line.startsWith("go")) {
+                stopUciSearch(searchThread);
+                searchThread = startUciSearch(line);
+            } else if (line.equals("stop")) {
+                stopUciSearch(searchThread);
+            } else if (line.equals("ponderhit")) {
+                /*
+                 * The opponent played the expected move, so the ponder search becomes a normal search
+                 */
+                searcher.startClock();
+                uciWait = false;
+            } else if (line.startsWith("setoption ")) {
+                stopUciSearch(searchThread);
+                parseUciOption(line);
+            } else if (line.equals("quit")) {
+                break;
+            }
         }
 
-        piece = wN;
-        for (int i = 0; i < numPieces[piece]; i++) {
-            byte sq = pieceListSquare[piece * 10 + i];
-            score += knightScoreTable[getSquare64[sq]];
-        }
+        stopUciSearch(searchThread);
+        searcher.uciMode = false;
+        searcher.setTimeLimits(0, 0, 0, 0);
+        searcher.nodeLimit = 0;
+    }
 
-        piece = bN;
-        for (int i = 0; i < numPieces[piece]; i++) {
-            byte sq = pieceListSquare[piece * 10 + i];
-            score -= knightScoreTable[mirror64[getSquare64[sq]]];
-        }
+    /**
+     * Print the UCI engine identification and options
+     */
+    private void printUciId() {
+        System.out.println("id name Erling's Chess Engine");
+        System.out.println("id author Erling Rorvik");
+        System.out.println("option name Hash type spin default " + DEFAULT_HASH_MB + " min 1 max 4096");
+        System.out.println("option name EvalHash type spin default " + DEFAULT_EVAL_HASH_MB + " min 0 max 1024");
+        System.out.println("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+        System.out.println("option name Ponder type check default false");
+        System.out.println("uciok");
+    }
 
-        piece = wB;
-        for (int i = 0; i < numPieces[piece]; i++) {
-            byte sq = pieceListSquare[piece * 10 + i];
-            score += bishopScoreTable[getSquare64[sq]];
+    /**
+     * Set up the position from a UCI position command,
+     * position [startpos | fen <fen>] [moves <move> ...]
+     *
+     * @param line the position command
+     */
+    private void parseUciPosition(String line) {
+        int movesIndex = line.indexOf(" moves ");
+        if (line.startsWith("position fen ")) {
+            setBoard(line.substring(13, movesIndex < 0 ? line.length() : movesIndex).trim());
+        } else {
+            setBoard(START_FEN);
         }
 
-        piece = bB;
-        for (int i = 0; i < numPieces[piece]; i++) {
-            byte sq = pieceListSquare[piece * 10 + i];
-            score -= bishopScoreTable[mirror64[getSquare64[sq]]];
+        if (movesIndex >= 0) {
+            /*
+             * Make each of the moves, and reset the search ply after each one, as they are moves of the game
+             */
+            String[] moves = line.substring(movesIndex + 7).trim().split(" +");
+            for (String move : moves) {
+                if (move.length() < 4 || !searcher.attemptMove(move)) {
+                    System.out.println("info string Invalid move: " + move);
+                    break;
+                }
+                position.comPly = 0;
+            }
         }
+    }
 
-        piece = wR;
-        for (int i = 0; i < numPieces[piece]; i++) {
-            byte sq = pieceListSquare[piece * 10 + i];
-            score += rookScoreTable[getSquare64[sq]];
-        }
+    /**
+     * Set an option from a UCI setoption command, setoption name <id> value <x>
+     *
+     * @param line the setoption command
+     */
+    private void parseUciOption(String line) {
+        int valueIndex = line.indexOf(" value ");
+        if (!line.startsWith("setoption name ") || valueIndex < 0) return;
+        String name = line.substring(15, valueIndex).trim();
+        String value = line.substring(valueIndex + 7).trim();
 
-        piece = bR;
-        for (int i = 0; i < numPieces[piece]; i++) {
-            byte sq = pieceListSquare[piece * 10 + i];
-            score -= rookScoreTable[mirror64[getSquare64[sq]]];
+        try {
+            if (name.equalsIgnoreCase("Hash")) {
+                int mb = Integer.parseInt(value);
+                if (mb > 0) searcher.initHashTable(mb);
+            } else if (name.equalsIgnoreCase("EvalHash")) {
+                int mb = Integer.parseInt(value);
+                if (mb >= 0) searcher.initEvalHash(mb);
+            } else if (name.equalsIgnoreCase("Threads")) {
+                int n = Integer.parseInt(value);
+                if (n > 0 && n <= MAX_THREADS) searcher.threads = n;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("info string Invalid value: " + value);
         }
+    }
 
-        piece = wQ;
-        for (int i = 0; i < numPieces[piece]; i++) {
-            byte sq = pieceListSquare[piece * 10 + i];
-            score += queenScoreTable[getSquare64[sq]];
-        }
+    /**
+     * Read the limits of a UCI go command and start the search in a new thread.
+     * go [depth <d>] [nodes <n>] [movetime <ms>] [wtime <ms>] [btime <ms>] [winc <ms>] [binc <ms>]
+     * [movestogo <n>] [infinite] [ponder]
+     *
+     * @param line the go command
+     * @return the search thread
+     */
+    private ProcessThread startUciSearch(String line) {
+        String[] tokens = line.split(" +");
+        int depth = MAX_DEPTH - 1;
+        long nodes = 0;
+        long moveTime = 0;
+        long time = 0;
+        long inc = 0;
+        int movesToGo = 0;
+        boolean infinite = false;
+        boolean ponder = false;
 
-        piece = bQ;
-        for (int i = 0; i < numPieces[piece]; i++) {
-            byte sq = pieceListSquare[piece * 10 + i];
-            score -= queenScoreTable[mirror64[getSquare64[sq]]];
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "depth":
+                        depth = Math.max(1, Math.min(MAX_DEPTH - 1, Integer.parseInt(tokens[++i])));
+                        break;
+                    case "nodes":
+                        nodes = Long.parseLong(tokens[++i]);
+                        break;
+                    case "movetime":
+                        moveTime = Long.parseLong(tokens[++i]);
+                        break;
+                    case "wtime":
+                        if (position.side == WHITE) time = Long.parseLong(tokens[++i]);
+                        else i++;
+                        break;
+                    case "btime":
+                        if (position.side == BLACK) time = Long.parseLong(tokens[++i]);
+                        else i++;
+                        break;
+                    case "winc":
+                        if (position.side == WHITE) inc = Long.parseLong(tokens[++i]);
+                        else i++;
+                        break;
+                    case "binc":
+                        if (position.side == BLACK) inc = Long.parseLong(tokens[++i]);
+                        else i++;
+                        break;
+                    case "movestogo":
+                        movesToGo = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "infinite":
+                        infinite = true;
+                        break;
+                    case "ponder":
+                        ponder = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println("info string Invalid go command: " + line);
         }
 
         /*
-         * Add an extra bonus for the bishop pair
+         * Allocate the time for the move. When pondering the clock does not start until ponderhit,
+         * and an infinite search has no time limit.
          */
-        if (numPieces[wB] > 1) {
-            score += scoreBishopPair;
-        }
-        if (numPieces[bB] > 1) {
-            score -= scoreBishopPair;
-        }
+        searcher.setTimeLimits(infinite ? 0 : time, inc, movesToGo, infinite ? 0 : moveTime);
+        searcher.nodeLimit = nodes;
+        uciWait = infinite || ponder;
+        if (!ponder) searcher.startClock();
+
+        final int d = depth;
+        ProcessThread searchThread = new ProcessThread() {
+            public void run() {
+                running = true;
+                int move = searchPosition(1, d);
+
+                /*
+                 * An infinite or ponder search waits for stop or ponderhit before reporting the best move
+                 */
+                while (uciWait && running) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
 
-        return side == WHITE ? score : -score;
+                String bestMove = "bestmove " + (move == 0 ? "0000" : moveToUci(move));
+                if (searcher.primaryVariationLength > 1 && searcher.primaryVariation[0] == move) {
+                    bestMove += " ponder " + moveToUci(searcher.primaryVariation[1]);
+                }
+                System.out.println(bestMove);
+            }
+        };
+        searchThread.start();
+        return searchThread;
     }
 
     /**
-     * Get the primary variation in this position
+     * Stop the UCI search thread if it is running, and wait for it to report the best move
      *
-     * @return move of integer format
+     * @param searchThread the search thread, may be null
      */
-    private int getPVMove() {
-        int index = (int) (posKey % PV_ENTRIES);
+    private void stopUciSearch(ProcessThread searchThread) {
+        if (searchThread == null) return;
 
         /*
-         * If the primary variation written to this index has the same position key as this one,
-         * we know it is written from this key
+         * Keep asking the search to stop until the thread is done, in case the thread had not started
+         * the search yet when it was first asked
          */
-        if (primaryVariationPositionKey[index] == posKey) {
-            return primaryVariationMove[index];
+        try {
+            while (searchThread.isAlive()) {
+                searchThread.running = false;
+                uciWait = false;
+                searcher.requestStop();
+                searchThread.join(1);
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
         }
-
-        return 0;
     }
 
     /**
-     * Store the move in the primary variation line
+     * Run perft on the standard perft test positions, and check the node counts against the known results
      *
-     * @param move the move to store
-     */
-    private void storePVMove(int move) {
-        /*
-         * Set both the move, and the original posKey on the index
-         */
-        int index = (int) (posKey % PV_ENTRIES);
-        primaryVariationMove[index] = move;
-        primaryVariationPositionKey[index] = posKey;
+     * @param depth the maximum depth to count to
+     * @param process the process running the suite, stops the suite when it is no longer running
+     */
+    private void runPerftSuite(int depth, ProcessThread process) {
+        String[] fens = {
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+        };
+        long[][] expected = {
+                {20, 400, 8902, 197281, 4865609, 119060324},
+                {48, 2039, 97862, 4085603, 193690690},
+                {14, 191, 2812, 43238, 674624, 11030083, 178633661},
+                {6, 264, 9467, 422333, 15833292},
+                {44, 1486, 62379, 2103487, 89941194},
+                {46, 2079, 89890, 3894594, 164075551}
+        };
+
+        int failed = 0;
+        long nodes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < fens.length && process.running; i++) {
+            setBoard(fens[i]);
+            System.out.println(fens[i]);
+            for (int d = 1; d <= depth && d <= expected[i].length && process.running; d++) {
+                long count = searcher.runPerft(d, false);
+                nodes += count;
+                if (count != expected[i][d - 1]) {
+                    System.out.println("Failed! Expected: " + expected[i][d - 1]);
+                    failed++;
+                }
+            }
+        }
+        long time = System.nanoTime() - start;
+
+        System.out.println("Total nodes: " + nodes + " Time: " + (time / 1000000) + " ms Nps: " + (nodes * 1000000000L / Math.max(time, 1)));
+        System.out.println(failed == 0 ? "All perft counts matched" : failed + " perft counts failed");
+        setBoard(fens[0]);
     }
 
     /**
-     * Set up the primary variation line so that we can read it from the primaary variation array
+     * Search a fixed set of positions to a fixed depth, and print the total number of nodes and the speed.
+     * Every position is searched with one thread, without time limits, and with all the tables cleared,
+     * so the node count only changes when the search itself changes. It works as a signature of the search,
+     * and the speed can be compared between versions that have the same signature.
      *
-     * @param depth the depth to search for a variation up to
-     * @return the number of moves found in the primary variation
-     */
-    private int getPvLine(int depth) {
-        int move = getPVMove();
-        int count = 0;
-        while (move != 0 && count < depth) {
+     * @param depth the depth to search each position to
+     * @param process the process running the benchmark, it stops when the process is stopped
+     */
+    private void runBench(int depth, ProcessThread process) {
+        String[] fens = {
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 10",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 11",
+                "4rrk1/pp1n3p/3q2pQ/2p1pb2/2PP4/2P3N1/P2B2PP/4RRK1 b - - 7 19",
+                "rq3rk1/ppp2ppp/1bnpb3/3N2B1/3NP3/7P/PPPQ1PP1/2KR3R w - - 7 14",
+                "r1bq1r1k/1pp1n1pp/1p1p4/4p2Q/4Pp2/1BNP4/PPP2PPP/3R1RK1 w - - 2 14",
+                "r3r1k1/2p2ppp/p1p1bn2/8/1q2P3/2NPQN2/PPP3PP/R4RK1 b - - 2 15",
+                "r1bbk1nr/pp3p1p/2n5/1N4p1/2Np1B2/8/PPP2PPP/2KR1B1R w kq - 0 13",
+                "r1bq1rk1/ppp1nppp/4n3/3p3Q/3P4/1BP1B3/PP1N2PP/R4RK1 w - - 1 16",
+                "4r1k1/r1q2ppp/ppp2n2/4P3/5Rb1/1N1BQ3/PPP3PP/R5K1 w - - 1 17",
+                "2rqkb1r/ppp2p2/2npb1p1/1N1Nn2p/2P1PP2/8/PP2B1PP/R1BQK2R b KQ - 0 11",
+                "r1bq1r1k/b1p1npp1/p2p3p/1p6/3PP3/1B2NN2/PP3PPP/R2Q1RK1 w - - 1 16",
+                "3r1rk1/p5pp/bpp1pp2/8/q1PP1P2/b3P3/P2NQRPP/1R2B1K1 b - - 6 22",
+                "r1q2rk1/2p1bppp/2Pp4/p6b/Q1PNp3/4B3/PP1R1PPP/2K4R w - - 2 18",
+                "4k2r/1pb2ppp/1p2p3/1R1p4/3P4/2r1PN2/P4PPP/1R4K1 b - - 3 22",
+                "3q2k1/pb3p1p/4pbp1/2r5/PpN2N2/1P2P2P/5PP1/Q2R2K1 b - - 4 26",
+                "6k1/6p1/6Pp/ppp5/3pn2P/1P3K2/1PP2P2/3N4 b - - 0 1",
+                "3b4/5kp1/1p1p1p1p/pP1PpP1P/P1P1P3/3KN3/8/8 w - - 0 1",
+                "2K5/p7/7P/5pR1/8/5k2/r7/8 w - - 0 1",
+                "8/6pk/1p6/8/PP3p1p/5P2/4KP1q/3Q4 w - - 0 1",
+                "7k/3p2pp/4q3/8/4Q3/5Kp1/P6b/8 w - - 0 1",
+                "8/2p5/8/2kPKp1p/2p4P/2P5/3P4/8 w - - 0 1",
+                "8/1p3pp1/7p/5P1P/2k3P1/8/2K2P2/8 w - - 0 1",
+                "8/pp2r1k1/2p1p3/3pP2p/1P1P1P1P/P5KR/8/8 w - - 0 1",
+                "8/3p4/p1bk3p/Pp6/1Kp1PpPp/2P2P1P/2P5/5B2 b - - 0 1",
+                "5k2/7R/4P2p/5K2/p1r2P1p/8/8/8 b - - 0 1",
+                "6k1/6p1/P6p/r1N5/5p2/7P/1b3PP1/4R1K1 w - - 0 1",
+                "1r3k2/4q3/2Pp3b/3Bp3/2Q2p2/1p1P2P1/1P2KP2/3N4 w - - 0 1",
+                "6k1/4pp1p/3p2p1/P1pPb3/R7/1r2P1PP/3B1P2/6K1 w - - 0 1",
+                "8/3p3B/5p2/5P2/p7/PP5b/k7/6K1 w - - 0 1",
+                "5rk1/q6p/2p3bR/1pPp1rP1/1P1Pp3/P3B1Q1/1K3P2/R7 w - - 93 90",
+                "4rrk1/1p1nq3/p7/2p1P1pp/3P2bp/3Q1Bn1/PPPB4/1K2R1NR w - - 40 21",
+                "r3k2r/3nnpbp/q2pp1p1/p7/Pp1PPPP1/4BNN1/1P5P/R2Q1RK1 w kq - 0 16",
+                "3Qb1k1/1r2ppb1/pN1n2q1/Pp1Pp1Pr/4P2p/4BP2/4B1R1/1R5K b - - 11 40",
+                "4k3/3q1r2/1N2r1b1/3ppN2/2nPP3/1B1R2n1/2R1Q3/3K4 w - - 5 1",
+                "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+                "rnbqkb1r/pp1p1ppp/4pn2/2p5/2PP4/2N5/PP2PPPP/R1BQKBNR w KQkq - 0 4",
+                "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8",
+                "2rq1rk1/pb1nbppp/1p2pn2/2pp4/2PP4/1PN1PN2/PB2BPPP/R2Q1RK1 w - - 0 11",
+                "8/8/1p1k4/1P6/2K5/8/8/8 w - - 0 1"
+        };
+
+        int savedThreads = searcher.threads;
+        boolean savedPrint = searcher.printSearch;
+        searcher.threads = 1;
+        searcher.printSearch = false;
+        searcher.setTimeLimits(0, 0, 0, 0);
+        searcher.nodeLimit = 0;
+
+        long nodes = 0;
+        long time = 0;
+        for (int i = 0; i < fens.length && process.running; i++) {
             /*
-             * Loop through all the moves registered in the primary variation, and attempt it,
-             * Then update the primary variation and get the next move
+             * Start every position from a fresh state, so the order of the positions does not matter
              */
-            if (moveExists(move)) {
-                makeMove(move);
-                primaryVariation[count++] = move;
-                move = getPVMove();
-            } else {
-                break;
-            }
-        }
+            setBoard(fens[i]);
+            searcher.clearTables();
 
-        /*
-         * Afterwards revert the number of moves made int the variation
-         */
-        while (comPly > 0) {
-            revertMove();
+            long start = System.nanoTime();
+            int move = searchPosition(1, depth);
+            time += System.nanoTime() - start;
+            nodes += searcher.searchnodes;
+            System.out.println("Position " + (i + 1) + "/" + fens.length + " Best: " + moveToUci(move) + " Nodes: " + searcher.searchnodes);
         }
 
-        return count;
+        searcher.threads = savedThreads;
+        searcher.printSearch = savedPrint;
+        setBoard(START_FEN);
+
+        System.out.println("Total nodes: " + nodes + " Time: " + (time / 1000000) + " ms Nps: " + (nodes * 1000000000L / Math.max(time, 1)));
     }
 
     /**
-     * Check if a move exists
-     * @param move move of integer format to check existence of
-     * @return boolean representing the existence
-     */
-    private boolean moveExists(int move) {
-        /*
-         * Generate the moves and check if the move exists in the list, and the move is legal
-         */
-        generateMoves();
-        for (int i = moveListStart[comPly]; i < moveListStart[comPly + 1]; i++) {
-            int foundMove = moveList[i];
-            if (!makeMove(foundMove)) {
-                continue;
+     * Measure the speed of the static evaluation on the leaves of a short tree from the current position,
+     * the way the search meets the positions, instead of evaluating one position over and over from the caches.
+     * The pawn hash table is cleared first. The tree is walked in pairs of passes, one that only makes the moves
+     * and one that also evaluates the leaves, and the evaluation time is the difference between the two.
+     *
+     * @param count the minimum number of evaluations
+     * @param process the process running the benchmark, it stops when the process is stopped
+     */
+    private void runEvalBench(long count, ProcessThread process) {
+        searcher.clearTables();
+        position.comPly = 0;
+        long[] result = new long[2];
+        long walkTime = 0;
+        long evalTime = 0;
+        while (result[0] < count && process.running) {
+            long start = System.nanoTime();
+            evaluateLeaves(EVAL_BENCH_DEPTH, false, new long[2]);
+            walkTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long evaluations = result[0];
+            evaluateLeaves(EVAL_BENCH_DEPTH, true, result);
+            evalTime += System.nanoTime() - start;
+            if (result[0] == evaluations) {
+                System.out.println("No legal moves!");
+                return;
             }
-            revertMove();
-            if (move == foundMove) return true;
         }
-        return false;
+        long time = Math.max(evalTime - walkTime, 1);
+
+        System.out.println("Evaluations: " + result[0] + " Average score: " + (result[1] / Math.max(result[0], 1)) + " Time: " + (time / 1000000) + " ms Evals/s: " + (result[0] * 1000000000L / time));
+    }
+
+    /**
+     * Walk the legal moves of the current position to a depth, and evaluate the positions at the leaves
+     *
+     * @param depth the depth of the leaves
+     * @param evaluate boolean if the leaves are evaluated, or only reached
+     * @param result the number of leaves is added to index 0, and the sum of the evaluations to index 1
+     */
+    private void evaluateLeaves(int depth, boolean evaluate, long[] result) {
+        if (depth == 0) {
+            result[0]++;
+            if (evaluate) result[1] += searcher.evaluatePosition();
+            return;
+        }
+
+        searcher.generateLegalMoves();
+        int start = searcher.moveListStart[position.comPly];
+        int end = searcher.moveListStart[position.comPly + 1];
+        for (int i = start; i < end; i++) {
+            position.playMove(searcher.moveList[i]);
+            evaluateLeaves(depth - 1, evaluate, result);
+            position.revertMove();
+        }
     }
 
     /**
-     * Attempt to execute a move from an input string
-     * @param move move string in the format a1h8p where the 4 first chars represent the from and to square, and the 5th char represents a promotion piece
-     * @return boolean if the execution succeeded
+     * Inner class for the gui window.
+     * The gui is an optional layer on top of the engine. It is only loaded when it is attached,
+     * so a headless engine never initializes AWT or Swing.
      */
-    private boolean attemptMove(String move) {
+    private static class Gui extends Canvas {
         /*
-         * Get the ranks and files from the string
+         * The width and height of a tile
+         * The buffering level for rendering
          */
-        int from_file = move.charAt(0) - 'a';
-        int from_rank = move.charAt(1) - '1';
-        int to_file = move.charAt(2) - 'a';
-        int to_rank = move.charAt(3) - '1';
+        private static final int width = 80;
+        private static final int height = 80;
+        private static final int bufferingLevel = 3;
 
         /*
-         * Check if the squares are on the board
+         * The engine the gui shows, and the window frame object
          */
-        if (from_file > 7 || to_file > 7 || from_rank > 7 || to_rank > 7 || from_file < 0 || to_file < 0 || from_rank < 0 || to_rank < 0)
-            return false;
+        private final Chess chess;
+        private final JFrame frame;
 
         /*
-         * Get the from and to squares base 120
+         * Array containing the images of each of the pieces indexed by piece number
          */
-        byte from_sq = getSquare120[from_file + from_rank * 8];
-        byte to_sq = getSquare120[to_file + to_rank * 8];
-
-        byte piece = board[from_sq];
+        private final BufferedImage[] imagePieces;
 
         /*
-         * The target piece must be of the same side as the move
+         * The selected tile by the user
          */
-        if (colPieces[piece] != side) return false;
+        private int sx, sy;
 
         /*
-         * Check if the from and to squares match up with a move in the move list
+         * The thread to handle rendering
          */
-        generateMoves();
-        for (int i = moveListStart[comPly]; i < moveListStart[comPly + 1]; i++) {
-            int lmove = moveList[i];
-            if (getFromSq(lmove) == from_sq && getToSq(lmove) == to_sq) {
-                if ((lmove & MFLAG_PROMOTION) != 0) {
-                    /*
-                     * If the move is a promotion piece, check the last char for the promotion piece
-                     * by looping through the piece chars, and finding the piece of the right color.
-                     */
-                    for (byte c = 0; c < pieceChars.length; c++) {
-                        if (pieceChars[c] == move.charAt(4)) {
-                            int pce = c;
-                            if (colPieces[c] != side) {
-                                if (side == WHITE) pce = c - 6;
-                                else pce = c + 6;
+        private final ProcessThread renderingThread;
+
+        /**
+         * Load the resources, open the window and start rendering
+         *
+         * @param chess the engine to show
+         * @throws IOException if the image resources could not be loaded
+         */
+        Gui(Chess chess) throws IOException {
+            this.chess = chess;
+            sx = -1;
+            sy = -1;
+
+            /*
+             * Load the image resources for the pieces
+             */
+            imagePieces = new BufferedImage[]{
+                    null,
+                    ImageIO.read(getClass().getResource("/white/pawn.png")),
+                    ImageIO.read(getClass().getResource("/white/knight.png")),
+                    ImageIO.read(getClass().getResource("/white/bishop.png")),
+                    ImageIO.read(getClass().getResource("/white/rook.png")),
+                    ImageIO.read(getClass().getResource("/white/queen.png")),
+                    ImageIO.read(getClass().getResource("/white/king.png")),
+                    ImageIO.read(getClass().getResource("/black/pawn.png")),
+                    ImageIO.read(getClass().getResource("/black/knight.png")),
+                    ImageIO.read(getClass().getResource("/black/bishop.png")),
+                    ImageIO.read(getClass().getResource("/black/rook.png")),
+                    ImageIO.read(getClass().getResource("/black/queen.png")),
+                    ImageIO.read(getClass().getResource("/black/king.png"))
+            };
+
+            Dimension size = new Dimension(width * 8, height * 8);
+            frame = new JFrame();
+            setPreferredSize(size);
+            frame.setResizable(false);
+            frame.setTitle("Chess");
+            frame.add(this);
+            frame.pack();
+            frame.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+            frame.setLocationRelativeTo(null);
+            frame.setVisible(true);
+            addMouseListener(new MouseAdapter() {
+                public void mouseClicked(MouseEvent e) {
+                    if (chess.playerMove) {
+                        /*
+                         * If the player is allowed to make a move, get the tile,
+                         * check if any other tiles are selected, if they are attempt a move
+                         * unless they are the same, in either case un-mark the tile.
+                         * Otherwise, mark the tile
+                         */
+                        int tx = e.getX() / width;
+                        int ty = e.getY() / height;
+
+                        if (sy >= 0 && sx >= 0) {
+                            if (tx != sx || ty != sy) {
+                                String moveString = "" + (char) ('a' + sx) + (8 - sy) + (char) ('a' + tx) + (8 - ty);
+                                System.out.println("Attempting Move : " + moveString);
+                                boolean res = chess.searcher.attemptMove(moveString);
+                                if (!res) {
+                                    System.out.println("Move failed!");
+                                }
                             }
+                            sx = -1;
+                            sy = -1;
+                        } else {
+                            sy = ty;
+                            sx = tx;
+                        }
+                        chess.checkStatus(); // Check the status to see if the game has ended or not
+                    }
+                }
+            });
+            /*
+             * Because the rendering thread must be shut down before closing the window,
+             * A custom window closing event is necessary to close the chess object.
+             */
+            frame.addWindowListener(new WindowAdapter() {
+                public void windowClosing(WindowEvent e) {
+                    chess.stop();
+                }
+            });
+            requestFocus();
+
+            renderingThread = new ProcessThread() {
+                public void run() {
+                    running = true;
+                    while (running) {
+                        /*
+                         * While the renderer is running and the game is not searching render the board
+                         */
+                        if (!chess.searcher.searching) {
+                            render();
+                        }
+                        try {
                             /*
-                             * Create a new move with the promotion piece and return the move status,
-                             * if it is legal or not.
+                             * There is no need to consume processing power by rendering all the time,
+                             * so sleep a few milliseconds between each time
                              */
-                            int newMove = getMove(getFromSq(lmove), getToSq(lmove), getCapturedPiece(lmove), pce, 0);
-                            return makeMove(newMove);
+                            Thread.sleep(1000 / 60);
+                        } catch (InterruptedException e) {
+                            e.printStackTrace();
                         }
                     }
+                }
+            };
+            renderingThread.start();
+        }
+
+        /**
+         * Stop the renderer from running and close the window
+         */
+        private void stop() {
+            try {
+                renderingThread.running = false;
+                if (Thread.currentThread() != renderingThread) renderingThread.join();
+                frame.dispose();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Set the title of the window
+         *
+         * @param title the title
+         */
+        private void setTitle(String title) {
+            frame.setTitle(title);
+        }
+
+        /**
+         * Render the board to the screen
+         */
+        private void render() {
+            /*
+             * Create the buffer strategy and graphics if they do not exist
+             */
+            BufferStrategy bs = getBufferStrategy();
+            if (bs == null) {
+                createBufferStrategy(bufferingLevel);
+                return;
+            }
+            Graphics g = bs.getDrawGraphics();
+
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                    /*
+                     * Loop through all the tiles on the board. If it's an odd tile color it blue, otherwise white
+                     */
+                    if ((x + y) % 2 == 1) {
+                        g.setColor(new Color(51, 188, 255));
+                    } else {
+                        g.setColor(Color.WHITE);
+                    }
+
+                    /*
+                     * Draw a rectangle on the square
+                     */
+                    g.fillRect(x * width, y * height, width, height);
 
                     /*
-                     * This means the promotion char was not a valid piece char
+                     * Get the piece on the square and draw it if it is non zero
                      */
-                    return false;
+                    byte piece = chess.position.board[getSquare120[mirror64[x + y * 8]]]; // We mirror because the board is rendered with black on top
+                    if (piece != 0) {
+                        g.drawImage(imagePieces[piece], x * width, y * height, width, height, null);
+                    }
                 }
+            }
 
-                /*
-                 * Make the move, and return the move status, if it is legal or not
-                 */
-                return makeMove(lmove);
+            /*
+             * If a square is selected mark it with a red frame
+             */
+            if (sx >= 0 && sy >= 0) {
+                g.setColor(Color.RED);
+                g.drawRect(sx * width, sy * height, width - 1, height - 1);
+                g.drawRect(sx * width + 1, sy * height + 1, width - 3, height - 3);
             }
-        }
 
-        /*
-         * This means the move was not in the move list
-         */
-        return false;
+            g.dispose();
+            bs.show();
+        }
     }
 
     /**
      * Inner class for processing threads that are controlled by the control variable running
      */
     private static class ProcessThread extends Thread {
-        public boolean running;
+        public volatile boolean running;
     }
 }
@@ -0,0 +1,2004 @@
+package com.potrik.main;
+
+import java.util.Random;
+
+/**
+ * Position.java
+ *
+ * The board of a chess game: the pieces, the side to move, the position keys and the move history,
+ * with the functions to make and take back moves.
+ * A position is not thread safe, every thread searching a position must have its own copy.
+ *
+ * Created by Erling Rorvik (Potrik) on 24.03.2016
+ */
+public final class Position {
+    /*
+     * The number of squares on the board (10 * 12)
+     */
+    static final byte BOARD_SQUARES = 120;
+
+    /*
+     * The maximum number of half moves in a game
+     */
+    private static final int MAX_GAME_MOVES = 2048;
+
+    /*
+     * The maximum number of depth to search
+     */
+    static final int MAX_DEPTH = 64;
+
+    /*
+     * The FEN of the start position
+     */
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /*
+     * Colors
+     */
+    static final byte WHITE = 0;
+    static final byte BLACK = 1;
+    private static final byte NONE = 2;
+
+    /*
+     * Castle Permissions
+     * The castle permission is stored in a 4 bits 0000
+     * Where the last represents white king side castle (2^0)
+     * Second represents white queen side castle (2^1)
+     * Third represents black king side castle (2^2)
+     * Fourth represents black queen side castle (2^3)
+     */
+    static final byte WKCA = 1;
+    static final byte WQCA = 2;
+    static final byte BKCA = 4;
+    static final byte BQCA = 8;
+
+    /*
+     * Static enumeration of the pieces
+     */
+    static final byte EMPTY = 0;
+    static final byte wP = 1;
+    static final byte wN = 2;
+    static final byte wB = 3;
+    static final byte wR = 4;
+    static final byte wQ = 5;
+    static final byte wK = 6;
+    static final byte bP = 7;
+    static final byte bN = 8;
+    static final byte bB = 9;
+    static final byte bR = 10;
+    static final byte bQ = 11;
+    static final byte bK = 12;
+
+    /*
+     * Squares values of some important squares
+     * The no square value (equivalent to null)
+     * The offboard value (square is not on the board)
+     */
+    static final byte NO_SQ = 99;
+    static final byte OFFBOARD = 100;
+
+    /*
+     * Quick Arrays for getting the file and rank of a square
+     */
+    private static final byte[] getFile = new byte[BOARD_SQUARES];
+    static final byte[] getRank = new byte[BOARD_SQUARES];
+
+    /*
+     * Quick Arrays for converting between 64 base square (0 - 63) to 120 base square (0 - 120)
+     */
+    static final byte[] getSquare64 = new byte[BOARD_SQUARES];
+    static final byte[] getSquare120 = new byte[64];
+
+    /*
+     * Quick Array for mirroring the base 64 board squares from white to black, so that a1 -> a8 and f3 -> f6 etc.
+     */
+    static final byte[] mirror64 = {
+            56, 57, 58, 59, 60, 61, 62, 63,
+            48, 49, 50, 51, 52, 53, 54, 55,
+            40, 41, 42, 43, 44, 45, 46, 47,
+            32, 33, 34, 35, 36, 37, 38, 39,
+            24, 25, 26, 27, 28, 29, 30, 31,
+            16, 17, 18, 19, 20, 21, 22, 23,
+            8, 9, 10, 11, 12, 13, 14, 15,
+            0, 1, 2, 3, 4, 5, 6, 7
+    };
+
+    /*
+     * Quick Arrays for checking a piece is of a type, regardless of color, saves the extra p == wP || p == bP.
+     * Indexed by the piece number
+     */
+    private static final boolean[] piecePawn = {false, true, false, false, false, false, false, true, false, false, false, false, false};
+    private static final boolean[] pieceKnight = {false, false, true, false, false, false, false, false, true, false, false, false, false};
+    private static final boolean[] pieceBishopQueen = {false, false, false, true, false, true, false, false, false, true, false, true, false};
+    private static final boolean[] pieceRookQueen = {false, false, false, false, true, true, false, false, false, false, true, true, false};
+    private static final boolean[] pieceKing = {false, false, false, false, false, false, true, false, false, false, false, false, true};
+
+    /*
+     * Quick Array for getting the piece number for the king indexed by side
+     */
+    static final byte[] sidesKings = {wK, bK};
+
+    /*
+     * Quick Array for getting the color of a piece, indexed by piece number
+     */
+    static final int[] colPieces = {NONE, WHITE, WHITE, WHITE, WHITE, WHITE, WHITE, BLACK, BLACK, BLACK, BLACK, BLACK, BLACK};
+
+    /*
+     * Array that defines the value of the pieces indexed by piece number
+     */
+    static final int[] valPieces = {0, 100, 325, 325, 550, 1000, 50000, 100, 325, 325, 550, 1000, 50000};
+
+    /*
+     * Array that defines the character symbols of the pieces indexed by piece number
+     */
+    static final char[] pieceChars = ".PNBRQKpnbrqk".toCharArray();
+
+    /*
+     * Array that defines the character symbols of the sides indexed by side
+     */
+    private static final char[] sideChar = "wb-".toCharArray();
+
+    /*
+     * CastlePermission Quick Array indexed by square number base 120
+     * Whenever a piece moves from or to a square, the castle permission &= castlePermSquare[squareNumber]
+     * So that if either a king or rook moves or is captured, then castling is no longer possible.
+     * Since castling permission is stored in 4 bits 1111 (all castling possible) & with for example 12 = 1100
+     * if the white king was moved, results in a castle permission 1100 for only black can castle.
+     */
+    private static final byte[] castlePermSquare = {
+            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+            15, 13, 15, 15, 15, 12, 15, 15, 14, 15,
+            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+            15, 7, 15, 15, 15, 3, 15, 15, 11, 15,
+            15, 15, 15, 15, 15, 15, 15, 15, 15, 15,
+            15, 15, 15, 15, 15, 15, 15, 15, 15, 15
+    };
+
+    /*
+     * The midgame score tables for each piece, indexed by square number base 64
+     * These represent the value of each piece when it's located on a given square
+     */
+    private static final int[] pawnScoreTable = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            10, 10, 0, -10, -10, 0, 10, 10,
+            5, 0, 0, 5, 5, 0, 0, 5,
+            0, 0, 10, 20, 20, 10, 0, 0,
+            5, 5, 5, 10, 10, 5, 5, 5,
+            10, 10, 10, 20, 20, 10, 10, 10,
+            20, 20, 20, 30, 30, 20, 20, 20,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] knightScoreTable = {
+            0, -10, 0, 0, 0, 0, -10, 0,
+            0, 0, 0, 5, 5, 0, 0, 0,
+            0, 0, 10, 10, 10, 10, 0, 0,
+            0, 0, 10, 20, 20, 10, 5, 0,
+            5, 10, 15, 20, 20, 15, 10, 5,
+            5, 10, 10, 20, 20, 10, 10, 5,
+            0, 0, 5, 10, 10, 5, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] bishopScoreTable = {
+            0, 0, -10, 0, 0, -10, 0, 0,
+            0, 0, 0, 10, 10, 0, 0, 0,
+            0, 0, 10, 15, 15, 10, 0, 0,
+            0, 10, 15, 20, 20, 15, 10, 0,
+            0, 10, 15, 20, 20, 15, 10, 0,
+            0, 0, 10, 15, 15, 10, 0, 0,
+            0, 0, 0, 10, 10, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] rookScoreTable = {
+            0, 0, 5, 10, 10, 5, 0, 0,
+            0, 0, 5, 10, 10, 5, 0, 0,
+            0, 0, 5, 10, 10, 5, 0, 0,
+            0, 0, 5, 10, 10, 5, 0, 0,
+            0, 0, 5, 10, 10, 5, 0, 0,
+            0, 0, 5, 10, 10, 5, 0, 0,
+            25, 25, 25, 25, 25, 25, 25, 25,
+            0, 0, 5, 10, 10, 5, 0, 0
+    };
+    private static final int[] queenScoreTable = {
+            0, 0, 0, -10, 0, 0, 0, 0,
+            0, 0, 5, 5, 5, 0, 0, 0,
+            0, 10, 2, 5, 5, 8, 0, 0,
+            10, 0, 5, 10, 10, 5, 10, 0,
+            0, 0, 5, 10, 10, 5, 0, 10,
+            0, 0, 3, 5, 5, 3, 0, 0,
+            3, 5, 7, 7, 7, 7, 5, 3,
+            1, 2, 3, 4, 4, 3, 2, 1
+    };
+    private static final int[] kingScoreTable = {
+            20, 30, 10, 0, 0, 10, 30, 20,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30
+    };
+
+    /*
+     * The endgame score tables for each piece, indexed by square number base 64.
+     * In the endgame the pawns are worth more the closer they are to promotion,
+     * the pieces are better in the center, and the king should come out and help
+     */
+    private static final int[] pawnEndScoreTable = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 5, 5, 5, 5, 5, 5, 5,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            20, 20, 20, 20, 20, 20, 20, 20,
+            35, 35, 35, 35, 35, 35, 35, 35,
+            55, 55, 55, 55, 55, 55, 55, 55,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] knightEndScoreTable = {
+            -20, -15, -10, -10, -10, -10, -15, -20,
+            -15, -5, 0, 0, 0, 0, -5, -15,
+            -10, 0, 5, 8, 8, 5, 0, -10,
+            -10, 0, 8, 10, 10, 8, 0, -10,
+            -10, 0, 8, 10, 10, 8, 0, -10,
+            -10, 0, 5, 8, 8, 5, 0, -10,
+            -15, -5, 0, 0, 0, 0, -5, -15,
+            -20, -15, -10, -10, -10, -10, -15, -20
+    };
+    private static final int[] bishopEndScoreTable = {
+            -10, -5, -5, -5, -5, -5, -5, -10,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            -5, 0, 5, 10, 10, 5, 0, -5,
+            -5, 0, 5, 10, 10, 5, 0, -5,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -10, -5, -5, -5, -5, -5, -5, -10
+    };
+    private static final int[] rookEndScoreTable = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] queenEndScoreTable = {
+            -10, -5, -5, -5, -5, -5, -5, -10,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            -5, 0, 5, 10, 10, 5, 0, -5,
+            -5, 0, 5, 10, 10, 5, 0, -5,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -10, -5, -5, -5, -5, -5, -5, -10
+    };
+    private static final int[] kingEndScoreTable = {
+            -50, -30, -30, -30, -30, -30, -30, -50,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -50, -40, -30, -20, -20, -30, -40, -50
+    };
+
+    /*
+     * The weight of each piece in the game phase. The phase is the sum of the weights of the pieces on the board,
+     * PHASE_TOTAL with all the pieces in the start position, and 0 with only kings and pawns left
+     */
+    private static final int[] phaseWeights = {0, 0, 1, 1, 2, 4, 0, 0, 1, 1, 2, 4, 0};
+    static final int PHASE_TOTAL = 24;
+
+    /*
+     * The piece square table score of every piece on every square base 120, from the side of the piece.
+     * The midgame and endgame scores are packed into one integer, see makeScore.
+     * 13 * 120 size, index = piece num * 120 + square
+     */
+    private static final int[] pieceSquareScores = new int[13 * BOARD_SQUARES];
+
+    /*
+     * The seed for the random generator of the hash keys.
+     * The seed is fixed so that the position keys are the same for every run.
+     */
+    private static final long HASH_SEED = 0x2F6B1C4E9A3D8705L;
+
+    /*
+     * Set the system property chess.debughash to true to cross check the incrementally updated position key
+     * against a fully generated key after every move and revert
+     */
+    private static final boolean DEBUG_HASH = Boolean.getBoolean("chess.debughash");
+
+    /*
+     * The size of one slot of the copy-make state stack.
+     * STATE_BYTES holds the board, the piece lists, the piece list indexes and the piece counts,
+     * STATE_LONGS the piece and side bitboards, the occupied bitboard, the position and pawn keys,
+     * the material and positional sums of both sides packed into one long each, and the packed scalar state.
+     */
+    private static final int STATE_BYTES = BOARD_SQUARES * 2 + 13 * 10 + 13;
+    private static final int STATE_LONGS = 13 + 2 + 1 + 2 + 2 + 1;
+
+    /*
+     * Set the system property chess.copymake to true to start new positions in copy-make mode
+     */
+    private static final boolean COPY_MAKE = Boolean.getBoolean("chess.copymake");
+
+    /*
+     * The unique 64 bit hash keys for each combination of piece and square
+     * 13 * 120 size, index = piece num * 120 + square
+     */
+    private static final long[] pieceKeys = new long[13 * BOARD_SQUARES];
+
+    /*
+     * The unique hash keys for the castle permissions,
+     * 16 size, index = castle permission
+     */
+    private static final long[] castleKeys = new long[16];
+
+    /*
+     * The unique hash keys for the en passant square,
+     * 8 size, index = file of the en passant square
+     */
+    private static final long[] enPasKeys = new long[8];
+
+    /*
+     * The unique side hash key
+     */
+    private static long sideKey;
+
+    /*
+     * Square number base 120 for the squares on the first and eighth rank
+     * Used for checking castling possibilities
+     */
+    private static final byte A1 = 21;
+    static final byte B1 = 22;
+    static final byte C1 = 23;
+    static final byte D1 = 24;
+    static final byte E1 = 25;
+    static final byte F1 = 26;
+    static final byte G1 = 27;
+    private static final byte H1 = 28;
+    private static final byte A8 = 91;
+    static final byte B8 = 92;
+    static final byte C8 = 93;
+    static final byte D8 = 94;
+    static final byte E8 = 95;
+    static final byte F8 = 96;
+    static final byte G8 = 97;
+    private static final byte H8 = 98;
+
+    /*
+     * Move variables
+     *
+     * Move structure, 32 bit int
+     *
+     * 0000 0000 0000 0000 0000 0000 0000 0000
+     *                                 xx xxxx  - From square    (0 - 63)
+     *                          xxxx xx         - To square      (0 - 63)
+     *                     xxxx                 - Captured Piece (0 - 15)
+     *                xxxx                      - Promoted Piece (0 - 15)
+     *              x                           - En passant     (boolean)
+     *             x                            - Pawn start     (boolean)
+     *            x                             - Castle move    (boolean)
+     *
+     * You can AND with the the move flags to get the value of each part
+     * of the move integer
+     */
+    static final int MFLAG_ENPASSANT = 0x100000;
+    static final int MFLAG_PAWNSTART = 0x200000;
+    static final int MFLAG_CASTLE = 0x400000;
+    static final int MFLAG_CAPTURE = 0xF000;
+    static final int MFLAG_PROMOTION = 0xF0000;
+
+    /*
+     * Init all the static lookup tables before any position is used
+     */
+    static {
+        initGetRankFile();
+        initGetSquare();
+        initPieceSquareScores();
+        initHashKeys();
+    }
+
+    /*
+     * The main board array, 120 tiles where the piece numbers are stored
+     */
+    byte[] board;
+
+    /*
+     * The current side to move
+     */
+    byte side;
+
+    /*
+     * The number of moves since last capture or pawn move.
+     * If this number reaches 100 it is a draw
+     */
+    byte fiftyMove;
+
+    /*
+     * The total number of half moves (ply) this game
+     */
+    int numPly;
+
+    /*
+     * The number of half moves calculated - the current depth
+     */
+    int comPly;
+
+    /*
+     * The en passant square
+     */
+    byte enPas;
+
+    /*
+     * The castle permissions stored as bits instead of a boolean
+     * This allows for much simpler castle permission calculations by
+     * permission &= the castle permission change for this square instead
+     * of having a whole bunch of if-statements and booleans
+     * 0000 0000
+     *         x - White king side castle
+     *        x  - White queen side castle
+     *       x   - Black king side castle
+     *      x    - Black queen side castle
+     */
+    byte castlePerm;
+
+    /*
+     * The material value of the two sides indexed by side
+     */
+    int[] material;
+
+    /*
+     * The sum of the piece square table scores of the pieces of the two sides indexed by side,
+     * with the midgame and endgame sums packed into one integer.
+     * Like the material it is updated when pieces are added, removed and moved.
+     */
+    int[] positional;
+
+    /*
+     * The game phase, from PHASE_TOTAL in the opening down to 0 in a pawn endgame, updated when pieces are added and removed
+     */
+    int phase;
+
+    /*
+     * The number of pieces of each piece type, indexed by square
+     */
+    byte[] numPieces;
+
+    /*
+     * The square of each piece on the board.
+     * index = piece * 10 + the number of this piece for this piece type
+     * The maximum possible pieces of a type is 10 (for knight, rooks and bishops, if 8 pawns promote)
+     */
+    byte[] pieceListSquare;
+
+    /*
+     * The number of the piece on each square in the piece list of its piece type, indexed by square base 120,
+     * so that pieceListSquare[board[sq] * 10 + pieceIndex[sq]] == sq for every occupied square.
+     * It lets pieces be removed and moved in the piece list without searching it. Empty squares hold stale values.
+     */
+    private byte[] pieceIndex;
+
+    /*
+     * The bitboards of the position, bit n is set if there is a piece on square n base 64.
+     * pieceBitboards is indexed by piece number, sideBitboards by side, and occupied holds all the pieces.
+     * They are updated together with the board and the piece lists, and are used with the attack tables
+     * in Bitboards for the move generation and attack detection.
+     */
+    long[] pieceBitboards;
+    long[] sideBitboards;
+    long occupied;
+
+    /*
+     * The hash position key of the current position.
+     * The hash key system is to check for position repetition.
+     * Each position has its own unique hash key, and if the exact same position
+     * occurs again it will have the same hash key.
+     * Thus things like the castle permissions and side must be included in the hash,
+     * because if they are changed it is not the same position.
+     */
+    long posKey;
+
+    /*
+     * The hash key of only the pawns, updated together with the position key.
+     * The pawn structure evaluation only depends on the pawns, so it is cached by this key.
+     */
+    long pawnKey;
+
+    /*
+     * The history of position keys this game
+     */
+    long[] historyPosKey;
+
+    /*
+     * The history of moves this game
+     */
+    private int[] historyMove;
+
+    /*
+     * The history of the fifty move status this game
+     */
+    private byte[] historyFiftymove;
+
+    /*
+     * The history of the en passant square this game
+     */
+    private byte[] historyEnPas;
+
+    /*
+     * The history of the castle permission this game
+     */
+    private byte[] historyCastlePerm;
+
+    /*
+     * The material gained after each capture in the exchange sequence of the static exchange evaluation
+     */
+    private int[] seeGain;
+
+    /*
+     * The pieces giving check to the side to move, and the pieces of the side to move pinned to their king,
+     * as bitboards for each ply. They are set up by updatePins before the moves of a ply are tested with isLegal.
+     */
+    long[] plyCheckers;
+    private long[] plyPinned;
+
+    /*
+     * Copy-make mode, see setCopyMake.
+     * The state stack holds one fixed size slot for each ply of the game, indexed by the ply the move was made at.
+     * copyMakePly is the first ply with a saved state, the moves made before the mode was turned on are
+     * reverted the normal way.
+     */
+    private boolean copyMake;
+    private int copyMakePly;
+    private byte[] stateBytes;
+    private long[] stateLongs;
+
+    /**
+     * Position initialization, the position starts as an empty board
+     */
+    public Position() {
+        /*
+         * See comments above for variable explanation
+         */
+        board = new byte[BOARD_SQUARES];
+        material = new int[2];
+        positional = new int[2];
+        numPieces = new byte[13];
+        pieceListSquare = new byte[13 * 10];
+        pieceIndex = new byte[BOARD_SQUARES];
+        pieceBitboards = new long[13];
+        sideBitboards = new long[2];
+        seeGain = new int[32];
+        plyCheckers = new long[MAX_DEPTH];
+        plyPinned = new long[MAX_DEPTH];
+
+        resetBoard();
+        setCopyMake(COPY_MAKE);
+    }
+
+    /**
+     * Position initialization from a fen string
+     *
+     * @param fen the fen string of the position
+     */
+    public Position(String fen) {
+        this();
+        parseFen(fen);
+    }
+
+    /**
+     * Copy a position. The copy shares no state with the original, so it can be used by another thread
+     *
+     * @param other the position to copy
+     */
+    public Position(Position other) {
+        this();
+        copyFrom(other);
+    }
+
+    /**
+     * Copy another position to this one, reusing the arrays of this position
+     *
+     * @param other the position to copy from
+     */
+    public void copyFrom(Position other) {
+        System.arraycopy(other.board, 0, board, 0, BOARD_SQUARES);
+        System.arraycopy(other.material, 0, material, 0, material.length);
+        System.arraycopy(other.positional, 0, positional, 0, positional.length);
+        phase = other.phase;
+        System.arraycopy(other.numPieces, 0, numPieces, 0, numPieces.length);
+        System.arraycopy(other.pieceListSquare, 0, pieceListSquare, 0, pieceListSquare.length);
+        System.arraycopy(other.pieceIndex, 0, pieceIndex, 0, BOARD_SQUARES);
+        System.arraycopy(other.pieceBitboards, 0, pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(other.sideBitboards, 0, sideBitboards, 0, sideBitboards.length);
+        occupied = other.occupied;
+        System.arraycopy(other.historyPosKey, 0, historyPosKey, 0, other.numPly);
+        System.arraycopy(other.historyFiftymove, 0, historyFiftymove, 0, other.numPly);
+        System.arraycopy(other.historyEnPas, 0, historyEnPas, 0, other.numPly);
+        System.arraycopy(other.historyCastlePerm, 0, historyCastlePerm, 0, other.numPly);
+        System.arraycopy(other.historyMove, 0, historyMove, 0, other.numPly);
+        side = other.side;
+        fiftyMove = other.fiftyMove;
+        numPly = other.numPly;
+        comPly = other.comPly;
+        enPas = other.enPas;
+        castlePerm = other.castlePerm;
+        posKey = other.posKey;
+        pawnKey = other.pawnKey;
+        setCopyMake(other.copyMake);
+    }
+
+    /**
+     * Turn copy-make mode on or off.
+     * In copy-make mode playMove saves the whole position state in a preallocated slot of the state stack,
+     * and revertMove copies it back instead of taking the move back piece by piece.
+     * Making a move costs a copy of a few hundred bytes, and reverting it costs the same copy, no matter the move.
+     *
+     * @param enabled boolean if copy-make should be used
+     */
+    public void setCopyMake(boolean enabled) {
+        if (enabled && stateBytes == null) {
+            stateBytes = new byte[MAX_GAME_MOVES * STATE_BYTES];
+            stateLongs = new long[MAX_GAME_MOVES * STATE_LONGS];
+        }
+        copyMake = enabled;
+        copyMakePly = numPly;
+    }
+
+    /**
+     * Save the state of the position in the state stack slot of the current ply
+     */
+    private void saveState() {
+        int b = numPly * STATE_BYTES;
+        System.arraycopy(board, 0, stateBytes, b, BOARD_SQUARES);
+        System.arraycopy(pieceListSquare, 0, stateBytes, b + BOARD_SQUARES, 13 * 10);
+        System.arraycopy(numPieces, 0, stateBytes, b + BOARD_SQUARES + 13 * 10, 13);
+        System.arraycopy(pieceIndex, 0, stateBytes, b + BOARD_SQUARES + 13 * 10 + 13, BOARD_SQUARES);
+
+        int l = numPly * STATE_LONGS;
+        System.arraycopy(pieceBitboards, 0, stateLongs, l, 13);
+        stateLongs[l + 13] = sideBitboards[WHITE];
+        stateLongs[l + 14] = sideBitboards[BLACK];
+        stateLongs[l + 15] = occupied;
+        stateLongs[l + 16] = posKey;
+        stateLongs[l + 17] = pawnKey;
+        stateLongs[l + 18] = ((long) material[BLACK] << 32) | (material[WHITE] & 0xFFFFFFFFL);
+        stateLongs[l + 19] = ((long) positional[BLACK] << 32) | (positional[WHITE] & 0xFFFFFFFFL);
+        stateLongs[l + 20] = ((long) phase << 32) | ((long) (fiftyMove & 0xFF) << 24) | ((castlePerm & 0xFF) << 16) | ((enPas & 0xFF) << 8) | (side & 0xFF);
+    }
+
+    /**
+     * Restore the state of the position from the state stack slot of the current ply
+     */
+    private void restoreState() {
+        int b = numPly * STATE_BYTES;
+        System.arraycopy(stateBytes, b, board, 0, BOARD_SQUARES);
+        System.arraycopy(stateBytes, b + BOARD_SQUARES, pieceListSquare, 0, 13 * 10);
+        System.arraycopy(stateBytes, b + BOARD_SQUARES + 13 * 10, numPieces, 0, 13);
+        System.arraycopy(stateBytes, b + BOARD_SQUARES + 13 * 10 + 13, pieceIndex, 0, BOARD_SQUARES);
+
+        int l = numPly * STATE_LONGS;
+        System.arraycopy(stateLongs, l, pieceBitboards, 0, 13);
+        sideBitboards[WHITE] = stateLongs[l + 13];
+        sideBitboards[BLACK] = stateLongs[l + 14];
+        occupied = stateLongs[l + 15];
+        posKey = stateLongs[l + 16];
+        pawnKey = stateLongs[l + 17];
+        material[WHITE] = (int) stateLongs[l + 18];
+        material[BLACK] = (int) (stateLongs[l + 18] >> 32);
+        positional[WHITE] = (int) stateLongs[l + 19];
+        positional[BLACK] = (int) (stateLongs[l + 19] >> 32);
+        long scalars = stateLongs[l + 20];
+        side = (byte) scalars;
+        enPas = (byte) (scalars >> 8);
+        castlePerm = (byte) (scalars >> 16);
+        fiftyMove = (byte) (scalars >> 24);
+        phase = (int) (scalars >> 32);
+    }
+
+    /**
+     * Init the arrays to get the rank and file of a tile
+     */
+    private static void initGetRankFile() {
+        for (int i = 0; i < BOARD_SQUARES; i++) {
+            /*
+             * Loop through all the tiles and set them to offboard
+             */
+            getFile[i] = OFFBOARD;
+            getRank[i] = OFFBOARD;
+        }
+
+        for (byte r = 0; r < 8; r++) {
+            for (byte f = 0; f < 8; f++) {
+                /*
+                 * Loop through all the ranks and files,
+                 * calculate the square base 64, set the rank to r
+                 * and set the file to f
+                 */
+                int sq = (21 + f) + (10 * r);
+                getFile[sq] = f;
+                getRank[sq] = r;
+            }
+        }
+    }
+
+    /**
+     * Init the arrays for converting between square base 120 and base 64
+     */
+    private static void initGetSquare() {
+        for (int i = 0; i < BOARD_SQUARES; i++) {
+            /*
+             * Loop through all the squares and set them to 64 (offboard)
+             */
+            getSquare64[i] = 64;
+        }
+
+        for (int i = 0; i < 64; i++) {
+            /*
+             * Loop through all the squares and set them to 120 (offboard)
+             */
+            getSquare120[i] = 120;
+        }
+
+        byte sq64 = 0;
+        for (byte r = 0; r < 8; r++) {
+            for (byte f = 0; f < 8; f++) {
+                /*
+                 * Loop through all the files and ranks, get the square number base 120 and set the square 64 number.
+                 */
+                byte sq = (byte) ((21 + f) + (10 * r));
+                getSquare120[sq64] = sq;
+                getSquare64[sq] = sq64;
+                sq64++;
+            }
+        }
+    }
+
+    /**
+     * Init the piece square scores of every piece on every square from the midgame and endgame score tables.
+     * The tables are written from white's side, so the squares of the black pieces are mirrored.
+     */
+    private static void initPieceSquareScores() {
+        int[][] mid = {null, pawnScoreTable, knightScoreTable, bishopScoreTable, rookScoreTable, queenScoreTable, kingScoreTable};
+        int[][] end = {null, pawnEndScoreTable, knightEndScoreTable, bishopEndScoreTable, rookEndScoreTable, queenEndScoreTable, kingEndScoreTable};
+        for (int sq = 0; sq < 64; sq++) {
+            for (int type = wP; type <= wK; type++) {
+                pieceSquareScores[type * 120 + getSquare120[sq]] = makeScore(mid[type][sq], end[type][sq]);
+                pieceSquareScores[(type + 6) * 120 + getSquare120[sq]] = makeScore(mid[type][mirror64[sq]], end[type][mirror64[sq]]);
+            }
+        }
+    }
+
+    /**
+     * Pack a midgame and an endgame score into one integer, the midgame score in the low 16 bits and the endgame
+     * score in the high 16 bits. Packed scores can be added and subtracted as normal integers, as long as
+     * both sums stay within 16 bits, so both are updated by a single addition.
+     *
+     * @param mid the midgame score
+     * @param end the endgame score
+     * @return the packed score
+     */
+    static int makeScore(int mid, int end) {
+        return (end << 16) + mid;
+    }
+
+    /**
+     * Get the midgame score of a packed score
+     *
+     * @param score the packed score
+     * @return the midgame score
+     */
+    static int midScore(int score) {
+        return (short) score;
+    }
+
+    /**
+     * Get the endgame score of a packed score. The midgame score may have borrowed from the high bits,
+     * so it is rounded back before shifting.
+     *
+     * @param score the packed score
+     * @return the endgame score
+     */
+    static int endScore(int score) {
+        return (score + 0x8000) >> 16;
+    }
+
+    /**
+     * Init the position hash keys to random 64 bit numbers from the fixed seed
+     */
+    private static void initHashKeys() {
+        Random random = new Random(HASH_SEED);
+        for (int i = 0; i < pieceKeys.length; i++) {
+            pieceKeys[i] = random.nextLong();
+        }
+        for (int i = 0; i < castleKeys.length; i++) {
+            castleKeys[i] = random.nextLong();
+        }
+        for (int i = 0; i < enPasKeys.length; i++) {
+            enPasKeys[i] = random.nextLong();
+        }
+        sideKey = random.nextLong();
+    }
+
+    /**
+     * Print the board to the console
+     */
+    public void printBoard() {
+        /*
+         * Print the board status variables
+         */
+        System.out.println();
+        System.out.println("Move number: " + numPly);
+        System.out.println("Castling: " + castlePerm);
+        System.out.print("Position: ");
+        System.out.printf("%02x\n", posKey);
+        System.out.println("En passant: " + enPas);
+        System.out.println("50 move status: " + fiftyMove);
+        System.out.println("Side : " + sideChar[side]);
+        System.out.println();
+        System.out.println("    a  b  c  d  e  f  g  h");
+        System.out.println();
+
+        /*
+         * Print the symbols, tiles and pieces
+         */
+        for (byte rank = 7; rank >= 0; rank--) {
+            System.out.print((rank + 1) + "  ");
+            for (byte file = 0; file < 8; file++) {
+                System.out.print(" " + pieceChars[board[(21 + file) + (10 * rank)]] + " ");
+            }
+            System.out.println("  " + (rank + 1));
+        }
+        System.out.println();
+        System.out.println("    a  b  c  d  e  f  g  h");
+        System.out.println();
+    }
+
+    /**
+     * Create a printable string from a move of integer format
+     *
+     * @param move Move variable of integer format
+     * @return String object in printable format of the move
+     */
+    String moveToString(int move) {
+        String result = "";
+
+        /*
+         * Get the to and from files and ranks and add them to the result
+         */
+        int from_file = getFile[getFromSq(move)];
+        int from_rank = getRank[getFromSq(move)];
+        int to_file = getFile[getToSq(move)];
+        int to_rank = getRank[getToSq(move)];
+
+        result += ((char) ('a' + from_file)) + "" + (1 + from_rank) + ((char) ('a' + to_file)) + "" + (1 + to_rank);
+
+        /*
+         * If the move was a promotion or capture move add the promoted or captured piece to the result
+         */
+        int promoted = getPromotedPiece(move);
+        int captured = getCapturedPiece(move);
+
+        if (captured != 0) {
+            result += "x" + pieceChars[captured];
+        }
+        if (promoted != 0) {
+            result += "=" + pieceChars[promoted];
+        }
+
+        return result;
+    }
+
+    /**
+     * Generate the position hash key for the current board position
+     *
+     * @return long position hash key
+     */
+    private long generatePosKey() {
+        long finalKey = 0;
+
+        /*
+         * Loop through the board and hash in the piece and square combinations
+         */
+        for (byte sq = 0; sq < BOARD_SQUARES; sq++) {
+            byte piece = board[sq];
+            if (piece != EMPTY && piece != OFFBOARD) {
+                finalKey ^= pieceKeys[piece * 120 + sq];
+            }
+        }
+
+        /*
+         * Hash in the castle permissions
+         */
+        finalKey ^= castleKeys[castlePerm];
+
+        /*
+         * Hash in the side key if the side is white
+         */
+        if (side == WHITE) {
+            finalKey ^= sideKey;
+        }
+
+        /*
+         * Hash in the en passant square if it exists
+         */
+        if (enPas != NO_SQ) {
+            finalKey ^= enPasKeys[getFile[enPas]];
+        }
+
+        return finalKey;
+    }
+
+    /**
+     * Generate the pawn hash key for the current board position
+     *
+     * @return long pawn hash key
+     */
+    private long generatePawnKey() {
+        long finalKey = 0;
+        for (byte sq = 0; sq < BOARD_SQUARES; sq++) {
+            byte piece = board[sq];
+            if (piece == wP || piece == bP) {
+                finalKey ^= pieceKeys[piece * 120 + sq];
+            }
+        }
+        return finalKey;
+    }
+
+    /**
+     * Toggle the hash key for a piece on a square, and the pawn key for pawns
+     *
+     * @param sq position of the piece by square number base 120
+     * @param piece piece number of the piece to hash
+     */
+    private void togglePieceHash(int sq, int piece) {
+        posKey ^= pieceKeys[piece * 120 + sq];
+        if (piece == wP || piece == bP) {
+            pawnKey ^= pieceKeys[piece * 120 + sq];
+        }
+    }
+
+    /**
+     * Toggle the hash key for the castle permission
+     */
+    private void toggleCastleHash() {
+        posKey ^= castleKeys[castlePerm];
+    }
+
+    /**
+     * Toggle the hash key for the en passant square
+     */
+    private void toggleEnpasHash() {
+        posKey ^= enPasKeys[getFile[enPas]];
+    }
+
+    /**
+     * Sum the piece square scores of the pieces of a side by going through the piece lists
+     *
+     * @param color the side
+     * @return the piece square score of the side
+     */
+    private int generatePositional(int color) {
+        int score = 0;
+        for (int piece = color == WHITE ? wP : bP; piece <= (color == WHITE ? wK : bK); piece++) {
+            for (int i = piece * 10; i < piece * 10 + numPieces[piece]; i++) {
+                score += pieceSquareScores[piece * 120 + pieceListSquare[i]];
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Check that the incrementally updated position key, pawn key, piece square scores and piece lists match fully generated ones.
+     * A mismatch is reported and the value corrected, so that only the move that broke it is reported.
+     *
+     * @param where the name of the method that updated the key
+     * @param move the move that was made or reverted
+     */
+    private void checkPosKey(String where, int move) {
+        long key = generatePosKey();
+        if (key != posKey) {
+            System.out.printf("Notice: Position key mismatch after %s %s: %016x expected %016x\n", where, moveToString(move), posKey, key);
+            posKey = key;
+        }
+        key = generatePawnKey();
+        if (key != pawnKey) {
+            System.out.printf("Notice: Pawn key mismatch after %s %s: %016x expected %016x\n", where, moveToString(move), pawnKey, key);
+            pawnKey = key;
+        }
+        for (int color = WHITE; color <= BLACK; color++) {
+            int score = generatePositional(color);
+            if (score != positional[color]) {
+                System.out.printf("Notice: Piece square score mismatch after %s %s: %d expected %d\n", where, moveToString(move), positional[color], score);
+                positional[color] = score;
+            }
+        }
+        int score = 0;
+        for (int piece = wP; piece <= bK; piece++) {
+            score += phaseWeights[piece] * numPieces[piece];
+        }
+        if (score != phase) {
+            System.out.printf("Notice: Game phase mismatch after %s %s: %d expected %d\n", where, moveToString(move), phase, score);
+            phase = score;
+        }
+        for (int piece = wP; piece <= bK; piece++) {
+            for (int i = 0; i < numPieces[piece]; i++) {
+                byte sq = pieceListSquare[piece * 10 + i];
+                if (board[sq] != piece || pieceIndex[sq] != i) {
+                    System.out.printf("Notice: Piece list mismatch after %s %s: square %d\n", where, moveToString(move), sq);
+                    pieceIndex[sq] = (byte) i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a piece from a square on the board
+     *
+     * @param sq the square base 120 from which to remove a piece
+     */
+    private void removePiece(byte sq) {
+        /*
+         * Get the piece number and the color
+         */
+        byte piece = board[sq];
+        int color = colPieces[piece];
+
+        /*
+         * Toggle the hash for this piece on this square
+         */
+        togglePieceHash(sq, piece);
+
+        /*
+         * Set the square to empty and subtract from the material and piece square scores
+         */
+        board[sq] = EMPTY;
+        material[color] -= valPieces[piece];
+        positional[color] -= pieceSquareScores[piece * 120 + sq];
+        phase -= phaseWeights[piece];
+
+        /*
+         * Clear the square in the bitboards
+         */
+        long bit = 1L << getSquare64[sq];
+        pieceBitboards[piece] ^= bit;
+        sideBitboards[color] ^= bit;
+        occupied ^= bit;
+
+        /*
+         * Remove the piece from the piece list by moving the last piece of the list into its place,
+         * and decrementing the number of pieces
+         */
+        byte index = pieceIndex[sq];
+        byte last = pieceListSquare[piece * 10 + --numPieces[piece]];
+        pieceListSquare[piece * 10 + index] = last;
+        pieceIndex[last] = index;
+    }
+
+    /**
+     * Add a piece to the board
+     * @param sq the target square base 120
+     * @param piece the chosen piece number
+     */
+    private void addPiece(byte sq, byte piece) {
+        /*
+         * Get the color of the piece, toggle the hash key, set the target square to the piece,
+         * Update the material value, the piece square score and the piece list
+         */
+        int color = colPieces[piece];
+        togglePieceHash(sq, piece);
+        board[sq] = piece;
+        material[color] += valPieces[piece];
+        positional[color] += pieceSquareScores[piece * 120 + sq];
+        phase += phaseWeights[piece];
+        pieceIndex[sq] = numPieces[piece];
+        pieceListSquare[piece * 10 + numPieces[piece]++] = sq;
+        long bit = 1L << getSquare64[sq];
+        pieceBitboards[piece] |= bit;
+        sideBitboards[color] |= bit;
+        occupied |= bit;
+    }
+
+    /**
+     * Move a piece from square a to b
+     * @param sq the from square base 120
+     * @param to_sq the to swuare base 120
+     */
+    private void movePiece(byte sq, byte to_sq) {
+        /*
+         * Get the piece and toggle the hash keys for the squares.
+         * Update the board data, the piece square score and change the square in the piece list
+         */
+        byte piece = board[sq];
+        togglePieceHash(sq, piece);
+        togglePieceHash(to_sq, piece);
+        positional[colPieces[piece]] += pieceSquareScores[piece * 120 + to_sq] - pieceSquareScores[piece * 120 + sq];
+        board[sq] = EMPTY;
+        board[to_sq] = piece;
+        long bits = (1L << getSquare64[sq]) | (1L << getSquare64[to_sq]);
+        pieceBitboards[piece] ^= bits;
+        sideBitboards[colPieces[piece]] ^= bits;
+        occupied ^= bits;
+        pieceListSquare[piece * 10 + pieceIndex[sq]] = to_sq;
+        pieceIndex[to_sq] = pieceIndex[sq];
+    }
+
+    /**
+     * Make a null move, passing the turn to the other side without moving. It must be taken back with takeNullMove.
+     * The fifty move counter is reset so that repetitions are not detected across the null move.
+     */
+    void makeNullMove() {
+        historyPosKey[numPly] = posKey;
+        historyCastlePerm[numPly] = castlePerm;
+        historyEnPas[numPly] = enPas;
+        historyFiftymove[numPly] = fiftyMove;
+        historyMove[numPly] = 0;
+
+        if (enPas != NO_SQ) toggleEnpasHash();
+        enPas = NO_SQ;
+        fiftyMove = 0;
+        numPly++;
+        comPly++;
+        side ^= 1;
+        posKey ^= sideKey;
+
+        if (DEBUG_HASH) checkPosKey("makeNullMove", 0);
+    }
+
+    /**
+     * Take back a null move made by makeNullMove
+     */
+    void takeNullMove() {
+        numPly--;
+        comPly--;
+
+        castlePerm = historyCastlePerm[numPly];
+        fiftyMove = historyFiftymove[numPly];
+        enPas = historyEnPas[numPly];
+        posKey = historyPosKey[numPly];
+        side ^= 1;
+
+        if (DEBUG_HASH) checkPosKey("takeNullMove", 0);
+    }
+
+    /**
+     * Check if a side has any pieces other than pawns and the king.
+     * Without them zugzwang is likely, and a null move can not be trusted.
+     *
+     * @param side the side
+     * @return boolean if the side has a knight, bishop, rook or queen
+     */
+    boolean hasNonPawnMaterial(int side) {
+        return (sideBitboards[side] & ~pieceBitboards[side == WHITE ? wP : bP] & ~pieceBitboards[side == WHITE ? wK : bK]) != 0;
+    }
+
+    /**
+     * Make a move, and revert it if it leaves the king in check
+     * @param move move of integer format
+     * @return boolean if the move was successful/legal or not
+     */
+    public boolean makeMove(int move) {
+        byte mside = side;
+        playMove(move);
+
+        /*
+         * If the king is in check however the move is illegal. Revert the move and return false
+         */
+        if (isAttacked(pieceListSquare[sidesKings[mside] * 10], side)) {
+            revertMove();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Make a move that is known to be legal, without checking if it leaves the king in check
+     * @param move move of integer format
+     */
+    void playMove(int move) {
+        /*
+         * Get the from and to squares, and store the side to move
+         */
+        byte from = getFromSq(move);
+        byte to = getToSq(move);
+        byte mside = this.side;
+
+        /*
+         * In copy-make mode save the whole state before anything is changed
+         */
+        if (copyMake) saveState();
+
+        /*
+         * Save the position key in the history array
+         */
+        historyPosKey[numPly] = posKey;
+
+        /*
+         * If the move was an en passant capture remove the captured piece
+         */
+        if ((move & MFLAG_ENPASSANT) != 0) {
+            removePiece(mside == WHITE ? ((byte) (to - 10)) : ((byte) (to + 10)));
+        } else if ((move & MFLAG_CASTLE) != 0) {
+            /*
+             * If the move was a castling move update the rook position based on the to square of the king
+             */
+            switch (to) {
+                case C1:
+                    movePiece(A1, D1);
+                    break;
+                case C8:
+                    movePiece(A8, D8);
+                    break;
+                case G1:
+                    movePiece(H1, F1);
+                    break;
+                case G8:
+                    movePiece(H8, F8);
+                    break;
+                default:
+                    System.out.println("Notice: Invalid castle move: " + move);
+                    break;
+            }
+        }
+
+        /*
+         * If the previous en passant square existed toggle the hash
+         * Toggle the castle permission hash
+         */
+        if (enPas != NO_SQ) toggleEnpasHash();
+        toggleCastleHash();
+
+        /*
+         * Save the board variables to history
+         */
+        historyCastlePerm[numPly] = castlePerm;
+        historyEnPas[numPly] = enPas;
+        historyFiftymove[numPly] = fiftyMove;
+        historyMove[numPly] = move;
+
+        /*
+         * Update the castle permissions based on the to and from square
+         * (Check the comment for the castlePermSquare array)
+         * Reset the en passant square, and toggle the castle hash
+         */
+        castlePerm &= castlePermSquare[from];
+        castlePerm &= castlePermSquare[to];
+        enPas = NO_SQ;
+        toggleCastleHash();
+
+        /*
+         * Get the captured piece, and remove it if it was non empty
+         * A capture resets the fifty move counter.
+         */
+        byte captured = getCapturedPiece(move);
+        if (captured != EMPTY) {
+            removePiece(to);
+            fiftyMove = 0;
+        } else {
+            fiftyMove++;
+        }
+
+        /*
+         * Increment the number of moves
+         */
+        numPly++;
+        comPly++;
+
+        /*
+         * If the piece moved was a pawn, and it was a pawn start move, add the en passant square and toggle the hash
+         */
+        if (piecePawn[board[from]]) {
+            fiftyMove = 0;
+            if ((move & MFLAG_PAWNSTART) != 0) {
+                enPas = mside == WHITE ? (byte) (from + 10) : (byte) (from - 10);
+                toggleEnpasHash();
+            }
+        }
+
+        /*
+         * Get the promoted piece, and if it is non empty remove the pawn and add the promoted piece
+         */
+        byte promoted = getPromotedPiece(move);
+        if (promoted != EMPTY) {
+            removePiece(from);
+            addPiece(to, promoted);
+        } else {
+            movePiece(from, to);
+        }
+
+        /*
+         * Toggle the side, and toggle the side hash
+         */
+        side ^= 1;
+        posKey ^= sideKey;
+
+        if (DEBUG_HASH) checkPosKey("makeMove", move);
+    }
+
+    /**
+     * Revert the last move
+     */
+    public void revertMove() {
+        /*
+         * Decrement the move counter
+         */
+        numPly--;
+        comPly--;
+        if (comPly < 0) comPly = 0;
+        if (numPly < 0) numPly = 0;
+
+        /*
+         * In copy-make mode the state before the move was saved, so just copy it back
+         */
+        if (copyMake && numPly >= copyMakePly) {
+            restoreState();
+            if (DEBUG_HASH) checkPosKey("revertMove", historyMove[numPly]);
+            return;
+        }
+
+        /*
+         * Retrieve the move from history
+         */
+        int move = historyMove[numPly];
+
+        /*
+         * The rest works just like makeMove()
+         */
+        byte to = getToSq(move);
+        byte from = getFromSq(move);
+        if (enPas != NO_SQ) toggleEnpasHash();
+        toggleCastleHash();
+
+        castlePerm = historyCastlePerm[numPly];
+        fiftyMove = historyFiftymove[numPly];
+        enPas = historyEnPas[numPly];
+
+        if (enPas != NO_SQ) toggleEnpasHash();
+        toggleCastleHash();
+        side ^= 1;
+        posKey ^= sideKey;
+
+        if ((move & MFLAG_ENPASSANT) != 0) {
+            if (side == WHITE) {
+                addPiece((byte) (to - 10), bP);
+            } else {
+                addPiece((byte) (to + 10), wP);
+            }
+        } else if ((move & MFLAG_CASTLE) != 0) {
+            switch (to) {
+                case C1:
+                    movePiece(D1, A1);
+                    break;
+                case C8:
+                    movePiece(D8, A8);
+                    break;
+                case G1:
+                    movePiece(F1, H1);
+                    break;
+                case G8:
+                    movePiece(F8, H8);
+                    break;
+                default:
+                    System.out.println("Notice: Invalid castle move: " + move);
+                    break;
+            }
+        }
+
+        movePiece(to, from);
+        byte captured = getCapturedPiece(move);
+        if (captured != EMPTY) {
+            addPiece(to, captured);
+        }
+
+        byte promoted = getPromotedPiece(move);
+        if (promoted != EMPTY) {
+            removePiece(from);
+            addPiece(from, colPieces[promoted] == WHITE ? wP : bP);
+        }
+
+        if (DEBUG_HASH) checkPosKey("revertMove", move);
+    }
+
+    /**
+     * Reset the board
+     */
+    private void resetBoard() {
+        resetPieceListMaterial();
+
+        /*
+         * Set all the squares to off board and fill them with empty pieces
+         */
+        for (int i = 0; i < BOARD_SQUARES; i++) {
+            board[i] = OFFBOARD;
+        }
+        for (int i = 0; i < 64; i++) {
+            board[getSquare120[i]] = EMPTY;
+        }
+
+        /*
+         * Reset the board variables and empty the arrays.
+         * See comment by declaration for more info.
+         */
+        side = NONE;
+        enPas = NO_SQ;
+        fiftyMove = 0;
+        comPly = 0;
+        numPly = 0;
+        castlePerm = 0;
+        posKey = 0;
+        pawnKey = 0;
+        copyMakePly = 0;
+        historyPosKey = new long[MAX_GAME_MOVES];
+        historyFiftymove = new byte[MAX_GAME_MOVES];
+        historyEnPas = new byte[MAX_GAME_MOVES];
+        historyCastlePerm = new byte[MAX_GAME_MOVES];
+        historyMove = new int[MAX_GAME_MOVES];
+    }
+
+    /**
+     * Reset the piece list and the material values
+     */
+    private void resetPieceListMaterial() {
+        /*
+         * Loop through all the squares in the piece list and set them to no square.
+         * Set the material score to 0 and the number of pieces to 0.
+         */
+        for (int i = 0; i < pieceListSquare.length; i++) {
+            pieceListSquare[i] = NO_SQ;
+        }
+
+        for (int i = 0; i < material.length; i++) {
+            material[i] = 0;
+            positional[i] = 0;
+        }
+        phase = 0;
+
+        for (int i = 0; i < numPieces.length; i++) {
+            numPieces[i] = 0;
+        }
+
+        for (int i = 0; i < pieceBitboards.length; i++) {
+            pieceBitboards[i] = 0;
+        }
+        sideBitboards[WHITE] = 0;
+        sideBitboards[BLACK] = 0;
+        occupied = 0;
+    }
+
+    /**
+     * Update the piece lists and material value
+     */
+    private void updatePieceListMaterial() {
+        resetPieceListMaterial();
+
+        /*
+         * Loop through the squares of the board, and if it's a piece add it to the lists
+         */
+        for (int i = 0; i < 64; i++) {
+            byte piece = board[getSquare120[i]];
+            if (piece != EMPTY) {
+                int col = colPieces[piece];
+                material[col] += valPieces[piece];
+                positional[col] += pieceSquareScores[piece * 120 + getSquare120[i]];
+                phase += phaseWeights[piece];
+                pieceListSquare[piece * 10 + numPieces[piece]] = getSquare120[i];
+                pieceIndex[getSquare120[i]] = numPieces[piece];
+                numPieces[piece]++;
+                pieceBitboards[piece] |= 1L << i;
+                sideBitboards[col] |= 1L << i;
+                occupied |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Parse a fen position string
+     * @param fen position string
+     */
+    public void parseFen(String fen) {
+        resetBoard();
+
+        /*
+         * The reading starts at the 8th rank (index 7) and the first file (index 0)
+         */
+        int rank = 7;
+        int file = 0;
+        int fenc = 0; // The fen character position counter
+
+        while (rank >= 0 && fenc < fen.length()) {
+            int count = 1;
+            byte piece;
+            /*
+             * If it's a piece char add it,
+             * A number means x blank spaces so the piece is set to blank,
+             * and set the count to the number
+             * '/' or ' ' means to end the line and decrement the rank
+             */
+            switch (fen.charAt(fenc)) {
+                case 'p':
+                    piece = bP;
+                    break;
+                case 'r':
+                    piece = bR;
+                    break;
+                case 'n':
+                    piece = bN;
+                    break;
+                case 'b':
+                    piece = bB;
+                    break;
+                case 'k':
+                    piece = bK;
+                    break;
+                case 'q':
+                    piece = bQ;
+                    break;
+                case 'P':
+                    piece = wP;
+                    break;
+                case 'R':
+                    piece = wR;
+                    break;
+                case 'N':
+                    piece = wN;
+                    break;
+                case 'B':
+                    piece = wB;
+                    break;
+                case 'K':
+                    piece = wK;
+                    break;
+                case 'Q':
+                    piece = wQ;
+                    break;
+
+                case '1':
+                case '2':
+                case '3':
+                case '4':
+                case '5':
+                case '6':
+                case '7':
+                case '8':
+                    piece = EMPTY;
+                    count = fen.charAt(fenc) - '0';
+                    break;
+
+                case '/':
+                case ' ':
+                    rank--;
+                    file = 0;
+                    fenc++;
+                    continue;
+                default:
+                    System.out.println("FEN error!");
+                    return;
+            }
+
+            /*
+             * By default the count is one, but if it's a space it might be more.
+             * Add the number of pieces equal to the count.
+             */
+            for (int i = 0; i < count; i++) {
+                int sq = (21 + file) + (10 * rank);
+                board[sq] = piece;
+                file++;
+            }
+            fenc++;
+        }
+
+        /*
+         * Get the side to move
+         */
+        side = (fen.charAt(fenc) == 'w') ? WHITE : BLACK;
+        fenc += 2;
+
+        /*
+         * Get the castling permissions
+         */
+        for (int i = 0; i < 4; i++) {
+            if (fen.charAt(fenc) == ' ') {
+                break;
+            }
+            switch (fen.charAt(fenc)) {
+                case 'K':
+                    castlePerm |= WKCA;
+                    break;
+                case 'Q':
+                    castlePerm |= WQCA;
+                    break;
+                case 'k':
+                    castlePerm |= BKCA;
+                    break;
+                case 'q':
+                    castlePerm |= BQCA;
+                    break;
+                default:
+                    break;
+            }
+            fenc++;
+        }
+        fenc++;
+
+        /*
+         * Get the en passant square
+         */
+        if (fen.charAt(fenc) != '-') {
+            file = fen.charAt(fenc) - 'a';
+            rank = fen.charAt(++fenc) - '1';
+            enPas = (byte) ((21 + file) + (10 * rank));
+        }
+
+        /*
+         * Set the position key and update the piece lists
+         */
+        posKey = generatePosKey();
+        pawnKey = generatePawnKey();
+        updatePieceListMaterial();
+    }
+
+    /**
+     * Checks if a square is attacked by a side
+     * @param sq the square number base 120
+     * @param side the side it's attacked by
+     * @return boolean if the square is attacked
+     */
+    boolean isAttacked(int sq, int side) {
+        /*
+         * Look at the square from the attacked square as if it was each of the piece types.
+         * If that piece type would attack a piece of the same type of the attacking side, the square is attacked.
+         * Pawns are looked up from the other side, as pawns attack in a different direction for each side.
+         */
+        int sq64 = getSquare64[sq];
+        int pawn = side == WHITE ? wP : bP;
+        if ((Bitboards.pawnAttacks[(side ^ 1) * 64 + sq64] & pieceBitboards[pawn]) != 0) return true;
+        if ((Bitboards.knightAttacks[sq64] & pieceBitboards[pawn + 1]) != 0) return true;
+        if ((Bitboards.kingAttacks[sq64] & pieceBitboards[pawn + 5]) != 0) return true;
+
+        /*
+         * The queen is both a bishop and a rook
+         */
+        long queens = pieceBitboards[pawn + 4];
+        if ((Bitboards.bishopAttacks(sq64, occupied) & (pieceBitboards[pawn + 2] | queens)) != 0) return true;
+        return (Bitboards.rookAttacks(sq64, occupied) & (pieceBitboards[pawn + 3] | queens)) != 0;
+    }
+
+    /**
+     * Get all the pieces of both sides that attack a square, with the given occupancy
+     *
+     * @param sq64 the square base 64
+     * @param occ the occupied squares, so that sliding pieces behind captured pieces can be found
+     * @return the bitboard of the attacking pieces
+     */
+    private long getAttackers(int sq64, long occ) {
+        long bishops = pieceBitboards[wB] | pieceBitboards[bB] | pieceBitboards[wQ] | pieceBitboards[bQ];
+        long rooks = pieceBitboards[wR] | pieceBitboards[bR] | pieceBitboards[wQ] | pieceBitboards[bQ];
+        return (Bitboards.pawnAttacks[BLACK * 64 + sq64] & pieceBitboards[wP])
+                | (Bitboards.pawnAttacks[WHITE * 64 + sq64] & pieceBitboards[bP])
+                | (Bitboards.knightAttacks[sq64] & (pieceBitboards[wN] | pieceBitboards[bN]))
+                | (Bitboards.kingAttacks[sq64] & (pieceBitboards[wK] | pieceBitboards[bK]))
+                | (Bitboards.bishopAttacks(sq64, occ) & bishops)
+                | (Bitboards.rookAttacks(sq64, occ) & rooks);
+    }
+
+    /**
+     * Get the squares attacked by a non pawn piece in the current position
+     *
+     * @param piece the piece number
+     * @param sq64 the square of the piece base 64
+     * @return the attacked squares as a bitboard
+     */
+    long getPieceAttacks(int piece, int sq64) {
+        if (pieceKnight[piece]) return Bitboards.knightAttacks[sq64];
+        if (pieceKing[piece]) return Bitboards.kingAttacks[sq64];
+
+        long attacks = 0;
+        if (pieceBishopQueen[piece]) attacks |= Bitboards.bishopAttacks(sq64, occupied);
+        if (pieceRookQueen[piece]) attacks |= Bitboards.rookAttacks(sq64, occupied);
+        return attacks;
+    }
+
+    /**
+     * Static exchange evaluation of a capture.
+     * Play out all the captures on the to square, each side always capturing with its least valuable piece,
+     * and either side may stop capturing when it would lose material by going on.
+     * A piece that captures uncovers any sliding piece behind it (x-ray), which joins the exchange.
+     * Pins and checks are not taken into account.
+     *
+     * @param move the capture of integer format
+     * @return the material won by the side to move, negative if the capture loses material
+     */
+    int see(int move) {
+        int from = move & 0x3F;
+        int to = (move >> 6) & 0x3F;
+        byte piece = board[getSquare120[from]];
+        int stm = colPieces[piece];
+        long occ = occupied ^ (1L << from);
+
+        /*
+         * The first capture, the en passant captured pawn is not on the to square
+         */
+        int d = 0;
+        if ((move & MFLAG_ENPASSANT) != 0) {
+            seeGain[0] = valPieces[wP];
+            occ ^= 1L << (stm == WHITE ? to - 8 : to + 8);
+        } else {
+            seeGain[0] = valPieces[getCapturedPiece(move)];
+        }
+        byte promoted = getPromotedPiece(move);
+        if (promoted != EMPTY) {
+            seeGain[0] += valPieces[promoted] - valPieces[wP];
+            piece = promoted;
+        }
+
+        long attackers = getAttackers(to, occ) & occ;
+        long diagonal = pieceBitboards[wB] | pieceBitboards[bB] | pieceBitboards[wQ] | pieceBitboards[bQ];
+        long straight = pieceBitboards[wR] | pieceBitboards[bR] | pieceBitboards[wQ] | pieceBitboards[bQ];
+
+        while (true) {
+            /*
+             * The gain if the piece on the square is captured, the other side does not have to capture
+             * if it already loses by capturing
+             */
+            d++;
+            seeGain[d] = valPieces[piece] - seeGain[d - 1];
+            if (Math.max(-seeGain[d - 1], seeGain[d]) < 0 || d == seeGain.length - 1) break;
+
+            /*
+             * Find the least valuable piece of the other side that attacks the square
+             */
+            stm ^= 1;
+            long sideAttackers = attackers & sideBitboards[stm];
+            if (sideAttackers == 0) break;
+            int first = stm == WHITE ? wP : bP;
+            piece = EMPTY;
+            for (int p = first; p <= first + 5; p++) {
+                long bb = sideAttackers & pieceBitboards[p];
+                if (bb != 0) {
+                    piece = (byte) p;
+                    occ ^= bb & -bb;
+                    break;
+                }
+            }
+
+            /*
+             * Remove the piece from the attackers and add the sliding pieces behind it
+             */
+            attackers |= (Bitboards.bishopAttacks(to, occ) & diagonal) | (Bitboards.rookAttacks(to, occ) & straight);
+            attackers &= occ;
+        }
+
+        /*
+         * Go back through the exchange, each side picking the best of capturing and not capturing
+         */
+        while (--d > 0) {
+            seeGain[d - 1] = -Math.max(-seeGain[d - 1], seeGain[d]);
+        }
+        return seeGain[0];
+    }
+
+    /**
+     * Get the from square 120 out of a move integer
+     * @param move move of integer format
+     * @return byte square
+     */
+    static byte getFromSq(int move) {
+        return getSquare120[move & 0x3F];
+    }
+
+    /**
+     * Get the to square 120 out of a move integer
+     * @param move move of integer format
+     * @return byte square
+     */
+    static byte getToSq(int move) {
+        return getSquare120[(move >> 6) & 0x3F];
+    }
+
+    /**
+     * Get the captured piece out of a move integer
+     * @param move move of integer format
+     * @return byte piece number
+     */
+    static byte getCapturedPiece(int move) {
+        return (byte) ((move >> 12) & 0xF);
+    }
+
+    /**
+     * Get the promoted piece out of a move integer
+     * @param move move of integer format
+     * @return byte piece number
+     */
+    static byte getPromotedPiece(int move) {
+        return (byte) ((move >> 16) & 0xF);
+    }
+
+    /**
+     * Create a move integer when given the from square, to square, captured piece, promoted piece, and a special move flag
+     * @param from the from square
+     * @param to the to square
+     * @param captured_piece any captured pieces
+     * @param promoted_piece any promoted pieces
+     * @param move_flag any special move flags
+     * @return move of integer format
+     */
+    static int getMove(int from, int to, int captured_piece, int promoted_piece, int move_flag) {
+        return getSquare64[from] | (getSquare64[to] << 6) | (captured_piece << 12) | (promoted_piece << 16) | move_flag;
+    }
+
+    /**
+     * Check if the position has occurred earlier
+     * @return boolean if it is a repetition
+     */
+    boolean isRepetition() {
+        /*
+         * Loop through all the positions down to the last time the fifty move count was reset,
+         * because if a pawn moves or a piece is captured the position can not occur again
+         */
+        for (int i = numPly - fiftyMove; i < numPly - 1; i++) {
+            if (posKey == historyPosKey[i]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Find the pieces giving check to the side to move and the pieces pinned to its king, for the current ply.
+     * A piece is pinned if it is the only piece between the king and an enemy slider on the same line.
+     */
+    void updatePins() {
+        int them = side ^ 1;
+        int king = getSquare64[pieceListSquare[sidesKings[side] * 10]];
+        long enemy = sideBitboards[them];
+        plyCheckers[comPly] = getAttackers(king, occupied) & enemy;
+
+        /*
+         * Look from the king through the own pieces for enemy sliders, and check what is in between
+         */
+        int first = them == WHITE ? wP : bP;
+        long queens = pieceBitboards[first + 4];
+        long snipers = (Bitboards.rookAttacks(king, enemy) & (pieceBitboards[first + 3] | queens))
+                | (Bitboards.bishopAttacks(king, enemy) & (pieceBitboards[first + 2] | queens));
+        long pinned = 0;
+        while (snipers != 0) {
+            long blockers = Bitboards.between[king * 64 + Long.numberOfTrailingZeros(snipers)] & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) pinned |= blockers & sideBitboards[side];
+            snipers &= snipers - 1;
+        }
+        plyPinned[comPly] = pinned;
+    }
+
+    /**
+     * Check if a pseudo legal move is legal, without making it. updatePins must have been called for the ply.
+     * The king may not move to an attacked square. In check, the other pieces must capture the checking piece
+     * or block the check, and in double check only the king can move. A pinned piece can only move along the pin.
+     * En passant removes two pieces from a line at once, so it is checked on the occupancy after the capture.
+     * @param move move of integer format
+     * @return boolean if the move is legal
+     */
+    boolean isLegal(int move) {
+        int from = move & 0x3F;
+        int to = (move >> 6) & 0x3F;
+        int king = getSquare64[pieceListSquare[sidesKings[side] * 10]];
+        long enemy = sideBitboards[side ^ 1];
+
+        if (from == king) {
+            /*
+             * The king is taken off the board, so that it does not block a slider attacking the square behind it
+             */
+            return (getAttackers(to, occupied ^ (1L << from)) & enemy) == 0;
+        }
+
+        if ((move & MFLAG_ENPASSANT) != 0) {
+            int captured = side == WHITE ? to - 8 : to + 8;
+            long occ = occupied ^ (1L << from) ^ (1L << to) ^ (1L << captured);
+            return (getAttackers(king, occ) & enemy & occ) == 0;
+        }
+
+        long checkers = plyCheckers[comPly];
+        if (checkers != 0) {
+            if ((checkers & (checkers - 1)) != 0) return false;
+            long evasions = checkers | Bitboards.between[king * 64 + Long.numberOfTrailingZeros(checkers)];
+            if ((evasions & (1L << to)) == 0) return false;
+        }
+
+        if ((plyPinned[comPly] & (1L << from)) != 0) {
+            return (Bitboards.line[king * 64 + from] & (1L << to)) != 0;
+        }
+        return true;
+    }
+
+    /**
+     * Check if a move from the hash table or the killer moves could have been generated in the current position.
+     * The move may still leave the king in check, which is tested by isLegal, like for generated moves.
+     * @param move move of integer format
+     * @return boolean if the move is pseudo legal
+     */
+    boolean isPseudoLegal(int move) {
+        byte from = getFromSq(move);
+        byte to = getToSq(move);
+        byte piece = board[from];
+        if (piece == EMPTY || colPieces[piece] != side) return false;
+
+        byte captured = getCapturedPiece(move);
+        byte promoted = getPromotedPiece(move);
+        if ((move & MFLAG_ENPASSANT) != 0) {
+            if (!piecePawn[piece] || to != enPas) return false;
+        } else if (board[to] != captured) {
+            return false;
+        }
+
+        if ((move & MFLAG_CASTLE) != 0) {
+            return pieceKing[piece] && canCastle(to);
+        }
+
+        if (piecePawn[piece]) {
+            /*
+             * A pawn moves forward onto an empty square, or diagonally forward when it captures.
+             * It promotes exactly when it reaches the last rank.
+             */
+            int dir = side == WHITE ? 10 : -10;
+            boolean lastRank = getRank[to] == (side == WHITE ? 7 : 0);
+            if (lastRank != (promoted != EMPTY) || promoted != EMPTY && colPieces[promoted] != side) return false;
+            if ((move & MFLAG_PAWNSTART) != 0) {
+                return getRank[from] == (side == WHITE ? 1 : 6) && to == from + 2 * dir && board[from + dir] == EMPTY;
+            }
+            if (captured != EMPTY || (move & MFLAG_ENPASSANT) != 0) {
+                return to == from + dir - 1 || to == from + dir + 1;
+            }
+            return to == from + dir;
+        }
+
+        if (promoted != EMPTY || (move & MFLAG_PAWNSTART) != 0) return false;
+        return (getPieceAttacks(piece, getSquare64[from]) & (1L << getSquare64[to])) != 0;
+    }
+
+    /**
+     * Check if the side to move can castle with the king to a square, the same way as the move generator
+     * @param to the square the king castles to
+     * @return boolean if the castle move is possible
+     */
+    private boolean canCastle(byte to) {
+        switch (to) {
+            case G1:
+                return side == WHITE && (castlePerm & WKCA) != 0 && board[F1] == EMPTY && board[G1] == EMPTY
+                        && !isAttacked(F1, BLACK) && !isAttacked(E1, BLACK);
+            case C1:
+                return side == WHITE && (castlePerm & WQCA) != 0 && board[B1] == EMPTY && board[C1] == EMPTY && board[D1] == EMPTY
+                        && !isAttacked(D1, BLACK) && !isAttacked(E1, BLACK);
+            case G8:
+                return side == BLACK && (castlePerm & BKCA) != 0 && board[F8] == EMPTY && board[G8] == EMPTY
+                        && !isAttacked(F8, WHITE) && !isAttacked(E8, WHITE);
+            case C8:
+                return side == BLACK && (castlePerm & BQCA) != 0 && board[B8] == EMPTY && board[C8] == EMPTY && board[D8] == EMPTY
+                        && !isAttacked(D8, WHITE) && !isAttacked(E8, WHITE);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Create a UCI format string from a move of integer format, e.g. e2e4 or e7e8q
+     *
+     * @param move move of integer format
+     * @return the move in UCI format
+     */
+    public static String moveToUci(int move) {
+        String result = "" + (char) ('a' + getFile[getFromSq(move)]) + (1 + getRank[getFromSq(move)])
+                + (char) ('a' + getFile[getToSq(move)]) + (1 + getRank[getToSq(move)]);
+        int promoted = getPromotedPiece(move);
+        if (promoted != EMPTY) {
+            result += Character.toLowerCase(pieceChars[promoted]);
+        }
+        return result;
+    }
+}
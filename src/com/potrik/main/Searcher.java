@@ -0,0 +1,2497 @@
+package com.potrik.main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static com.potrik.main.Position.*;
+
+/**
+ * Searcher.java
+ *
+ * The search of a position: move generation and ordering, alpha beta search, evaluation and perft,
+ * with the transposition table and the search stacks they use.
+ * A searcher is used by one thread at a time, the lazy SMP helpers each have their own searcher.
+ *
+ * Created by Erling Rorvik (Potrik) on 24.03.2016
+ */
+public final class Searcher {
+    /*
+     * The maximum number of possible moves in a position
+     */
+    private static final int MAX_POSITION_MOVES = 256;
+
+    /*
+     * The default size of the transposition table in megabytes
+     */
+    static final int DEFAULT_HASH_MB = 64;
+
+    /*
+     * The number of bytes used by one transposition table entry (a long key and a long data word)
+     */
+    static final int HASH_ENTRY_BYTES = 16;
+
+    /*
+     * The default size of the evaluation cache in megabytes
+     */
+    static final int DEFAULT_EVAL_HASH_MB = 4;
+
+    /*
+     * The number of entries in the pawn hash table
+     */
+    private static final int PAWN_HASH_ENTRIES = 1 << 16;
+
+    /*
+     * The number of entries in each transposition table bucket.
+     * The first entry is depth preferred, the second one is always replaced
+     */
+    private static final int HASH_BUCKET_ENTRIES = 2;
+
+    /*
+     * Transposition table bound flags
+     * HFALPHA means the score is an upper bound (no move raised alpha)
+     * HFBETA means the score is a lower bound (the move caused a beta cut off)
+     * HFEXACT means the score is the exact score of the position
+     */
+    private static final int HFNONE = 0;
+    private static final int HFALPHA = 1;
+    private static final int HFBETA = 2;
+    private static final int HFEXACT = 3;
+
+    /*
+     * The number of nodes between each time the search checks the time and node limits
+     */
+    private static final int CHECK_NODES = 1024;
+
+    /*
+     * Time management constants
+     * MOVE_OVERHEAD is the time in milliseconds kept in reserve for each move, for the communication and the move itself
+     * DEFAULT_MOVES_TO_GO is the number of moves the remaining time is split over when the moves to go is not known
+     * HARD_LIMIT_FACTOR is how many times the soft limit the hard limit is allowed to be
+     */
+    private static final long MOVE_OVERHEAD = 30;
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    private static final int HARD_LIMIT_FACTOR = 4;
+
+    /*
+     * Static variable for infinity, as Integer.MAX_VALUE does not work as -MIN_VALUE = MIN_VALUE
+     */
+    private static final int INF = 2000000;
+
+    /*
+     * Returned by the hash probe when the stored entry can not be used for a cut off
+     */
+    private static final int NO_SCORE = -INF - 1;
+
+    /*
+     * Static score value for the bishop pair
+     */
+    private static final int scoreBishopPair = 40;
+
+    /*
+     * Pawn structure scores. Doubled, isolated and backward pawns are penalized,
+     * and passed pawns get a bonus by how far they have advanced, indexed by the rank seen from the pawn's side,
+     * in the midgame and a larger one in the endgame
+     */
+    private static final int scorePawnDoubled = -10;
+    private static final int scorePawnIsolated = -10;
+    private static final int scorePawnBackward = -8;
+    private static final int[] scorePawnPassed = {0, 5, 10, 20, 35, 60, 100, 0};
+    private static final int[] scorePawnPassedEnd = {0, 10, 20, 35, 60, 100, 150, 0};
+
+    /*
+     * Static score value for each pawn in the shield in front of a king on its first two ranks, only in the midgame
+     */
+    private static final int scorePawnShield = 10;
+
+    /*
+     * MvvLva is Most Valuable Victim, Least Valuable Attacker.
+     * Because we want a beta cutoff as early as possible, we change the search order to search the best moves first.
+     * Capture moves are ranked higher than quiet moves, and they are ranked after the most valuable victim compared
+     * to the least valuable attacker.
+     * Array indexed by piece number for the MvvLva values of each piece.
+     */
+    private static final int[] MvvLvaValue = {0, 100, 200, 300, 400, 500, 600, 100, 200, 300, 400, 500, 600};
+
+    /*
+     * MvvLva capture scores for each capture indexed by piece number * piece number
+     * index = captured piece * 13 + attacking piece
+     * For all possible combinations of piece capturing
+     * Saving computation time by having this pre-calculated
+     */
+    private static final int[] MvvLvaScore = new int[13 * 13];
+
+    /*
+     * Move ordering score base for captures that do not lose material by the static exchange evaluation.
+     * Losing captures get LOSING_CAPTURE_SCORE as base instead, so they are searched after the killer moves.
+     */
+    private static final int CAPTURE_SCORE = 1000000;
+    private static final int LOSING_CAPTURE_SCORE = 700000;
+
+    /*
+     * The stages of the move picker in the search.
+     * The moves are generated lazily, so that a node that gets a beta cut off from the hash move
+     * or a capture never generates the quiet moves.
+     */
+    private static final int PICK_HASH = 0;
+    private static final int PICK_GEN_CAPTURES = 1;
+    private static final int PICK_GOOD_CAPTURES = 2;
+    private static final int PICK_KILLER1 = 3;
+    private static final int PICK_KILLER2 = 4;
+    private static final int PICK_GEN_QUIETS = 5;
+    private static final int PICK_QUIETS = 6;
+    private static final int PICK_BAD_CAPTURES = 7;
+    private static final int PICK_DONE = 8;
+
+    /*
+     * Late move reductions for each depth and move number
+     * index = depth * MAX_POSITION_MOVES + move number
+     * The reduction grows with the logarithm of both, so late moves at high depths are reduced the most
+     */
+    private static final int[] lmrReductions = new int[MAX_DEPTH * MAX_POSITION_MOVES];
+
+    /*
+     * Null move pruning constants
+     * NULL_MIN_DEPTH is the lowest depth to try a null move at
+     * NULL_VERIFY_DEPTH is the lowest depth a null move cut off is verified at, with a reduced search of the position.
+     * Set the system property chess.nullverify to false to turn the verification off
+     */
+    private static final int NULL_MIN_DEPTH = 3;
+    private static final int NULL_VERIFY_DEPTH = 8;
+    private static final boolean NULL_VERIFY = Boolean.parseBoolean(System.getProperty("chess.nullverify", "true"));
+
+    /*
+     * Late move reduction constants
+     * LMR_MIN_DEPTH is the lowest depth to reduce moves at
+     * LMR_MIN_MOVES is the number of moves searched at full depth before the rest are reduced
+     */
+    private static final int LMR_MIN_DEPTH = 3;
+    private static final int LMR_MIN_MOVES = 3;
+
+    /*
+     * Aspiration window constants
+     * ASPIRATION_MIN_DEPTH is the lowest depth to search with a window around the score of the last depth
+     * ASPIRATION_WINDOW is the initial distance from the last score to each side of the window, doubled at every re-search
+     */
+    private static final int ASPIRATION_MIN_DEPTH = 4;
+    private static final int ASPIRATION_WINDOW = 50;
+
+    /*
+     * The score of a check mate
+     */
+    private static final int MATE_SCORE = 1000000;
+
+    /*
+     * Init the static search tables before any searcher is used
+     */
+    static {
+        initMvvLva();
+        initReductions();
+    }
+
+    /*
+     * The position that is searched. Moves are made and taken back on it while searching,
+     * so it must not be used by any other thread during a search.
+     */
+    private final Position pos;
+
+    /*
+     * The transposition table is stored in two arrays of equal size,
+     * hashKeys holds the position key XOR the entry data and hashData holds the packed entry data.
+     * The tables are split into buckets of HASH_BUCKET_ENTRIES entries, indexed by position key & hashMask.
+     * The table is shared by all the search threads without any locking. Because the key is stored XOR the data,
+     * an entry that was written by two threads at the same time (or a torn long write) will not match the
+     * position key when probed, and is treated as empty.
+     *
+     * Data structure, 64 bit long
+     *
+     * bits  0 - 23 - Best move      (move integer)
+     * bits 24 - 31 - Depth          (0 - 255)
+     * bits 32 - 33 - Bound flag     (HFNONE, HFALPHA, HFBETA, HFEXACT)
+     * bits 34 - 39 - Age            (search number the entry was written in)
+     * bits 40 - 63 - Score          (signed)
+     */
+    long[] hashKeys;
+    private long[] hashData;
+    private int hashMask;
+
+    /*
+     * The age of the current search, entries from older searches are always replaced
+     */
+    private int hashAge;
+
+    /*
+     * The hash move found by the last probe of the transposition table
+     */
+    private int hashMove;
+
+    /*
+     * The number of transposition table probes, the number of probes where the position was found,
+     * and the number of probes that gave a cut off
+     */
+    private long hashProbes;
+    private long hashHits;
+    private long hashCuts;
+
+    /*
+     * The pawn hash table caches the pawn evaluation by the pawn key. Like the transposition table it is shared
+     * by the search threads without locking, pawnHashKeys holds the pawn key XOR the data, and pawnHashData holds
+     * the pawn score for white in the low 32 bits.
+     */
+    private long[] pawnHashKeys;
+    private long[] pawnHashData;
+
+    /*
+     * The number of pawn hash table probes and the number of probes where the pawn structure was found
+     */
+    private long pawnHashProbes;
+    private long pawnHashHits;
+
+    /*
+     * The evaluation cache stores the static evaluation of positions by the position key, so that positions
+     * reached again through transpositions are not evaluated again. It is shared by the search threads without
+     * locking, evalHashKeys holds the position key XOR the data, and evalHashData holds the evaluation for the
+     * side to move in the low 32 bits. The table is indexed by position key & evalHashMask, and is null when
+     * it is turned off.
+     */
+    private long[] evalHashKeys;
+    private long[] evalHashData;
+    private int evalHashMask;
+
+    /*
+     * The number of evaluation cache probes and the number of probes where the position was found
+     */
+    private long evalHashProbes;
+    private long evalHashHits;
+
+    /*
+     * The primary variation array stores the move integer of the primary variation
+     * down two the depth, indexed by the ply number
+     */
+    int[] primaryVariation;
+
+    /*
+     * Array that stores the move score of good quiet moves that are good in most of the situations.
+     * This move will most likely occur in many situations and need to be searched earlier.
+     * Indexed by the from and to square
+     */
+    private int[] searchHistory;
+
+    /*
+     * Array of killer moves, moves that are rated the highest, indexed by the depth.
+     * There are always two killer moves stored. The killer move is a good move that might occur
+     * in several variations, therefore it should be searched first.
+     */
+    private int[] searchKillers;
+
+    /*
+     * The state of the move picker for each ply: the stage, the hash move, the next move list index,
+     * where the losing captures start, and where the quiet moves start
+     */
+    private int[] pickStage;
+    private int[] pickHashMove;
+    private int[] pickIndex;
+    private int[] pickBadCaptures;
+    private int[] pickQuiets;
+
+    /*
+     * Array to store the move ordering scores of each move indexed by the move list index
+     */
+    private int[] moveScores;
+
+    /*
+     * The move list is the list of moves available in a position.
+     * The moveListStart array keeps track of the starting index for each ply of the available moves
+     * in the move list array. moveListStart is indexed by the ply number
+     */
+    int[] moveList;
+    int[] moveListStart;
+
+    /*
+     * The number of nodes searched
+     */
+    long searchnodes;
+
+    /*
+     * The number of beta cut offs
+     * and the number of beta cut offs on the first move.
+     * These provide statistics for the move ordering. We want to search the best moves first,
+     * So that we have the highest chance of a beta cut off.
+     */
+    private int searchbc;
+    private int searchbcf;
+
+    /*
+     * The search depth to search to
+     */
+    private int searchdepth;
+
+    /*
+     * Boolean to keep track of the searching, if it should continue to search.
+     * It is volatile because the search is stopped from other threads, and the search reads it at every node.
+     */
+    volatile boolean searching;
+
+    /*
+     * The time in nanoseconds the search was asked to stop, 0 if it has not been asked to.
+     * The stop latency is the time from the stop request until the search has returned its best move.
+     * The last and the highest stop latency in nanoseconds, and the number of stops measured.
+     */
+    private volatile long stopRequestTime;
+    private long lastStopLatency;
+    private long maxStopLatency;
+    int stopCount;
+
+    /*
+     * The time the search started, and the time the search must stop in milliseconds, 0 if there is no time limit.
+     * No new depth is started after the soft stop time, and no new depth is started if it is not expected to
+     * finish before the stop time.
+     * The stop times are volatile because the clock of a ponder search is started by the UCI thread at ponderhit,
+     * while the search thread is reading them.
+     */
+    private long searchStart;
+    private volatile long stopTime;
+    private volatile long softStopTime;
+
+    /*
+     * The soft and hard time limits allocated for the current move in milliseconds, 0 if there is no time limit.
+     * They are turned into the stop times when the clock starts.
+     */
+    private long softTime;
+    private long hardTime;
+
+    /*
+     * The maximum number of nodes to search, 0 if there is no node limit
+     */
+    long nodeLimit;
+
+    /*
+     * The number of moves in the primary variation of the last finished depth
+     */
+    int primaryVariationLength;
+
+    /*
+     * The score of the last finished depth of the search
+     */
+    private int searchScore;
+
+    /*
+     * The number of threads to search with, the main search thread included
+     */
+    int threads;
+
+    /*
+     * Boolean to print the search output for each depth
+     */
+    boolean printSearch;
+
+    /*
+     * Boolean for the UCI protocol mode, the search output is printed as UCI info lines
+     */
+    boolean uciMode;
+
+    /*
+     * The helper searchers and their threads used for the lazy SMP search.
+     * Each helper has its own position and search stacks, but shares the transposition table.
+     */
+    private Searcher[] helpers;
+    private Thread[] helperThreads;
+
+    /*
+     * The perft hash table, stores the number of leaf nodes of a position at a given depth.
+     * perftKeys holds the position key XOR the entry data, and perftData holds the number of nodes
+     * shifted 8 bits to the left with the depth in the lowest 8 bits.
+     * The table is indexed by position key & perftMask, and is null when it is turned off.
+     */
+    private long[] perftKeys;
+    private long[] perftData;
+    private int perftMask;
+
+    /*
+     * The number of perft hash probes and hits
+     */
+    private long perftProbes;
+    private long perftHits;
+
+    /**
+     * Searcher initialization with the default transposition table size
+     *
+     * @param position the position to search
+     */
+    public Searcher(Position position) {
+        this(position, DEFAULT_HASH_MB);
+    }
+
+    /**
+     * Searcher initialization
+     *
+     * @param position the position to search
+     * @param hashMegabytes the size of the transposition table in megabytes
+     */
+    public Searcher(Position position, int hashMegabytes) {
+        /*
+         * See comments above for variable explanation
+         */
+        pos = position;
+        initHashTable(hashMegabytes);
+        pawnHashKeys = new long[PAWN_HASH_ENTRIES];
+        pawnHashData = new long[PAWN_HASH_ENTRIES];
+        initEvalHash(DEFAULT_EVAL_HASH_MB);
+        initSearchStacks();
+    }
+
+    /**
+     * Helper searcher initialization for the lazy SMP search and the parallel perft.
+     * The helper has its own position and search stacks, and shares the tables of the parent.
+     *
+     * @param parent the searcher the helper searches for
+     */
+    private Searcher(Searcher parent) {
+        pos = new Position();
+        initSearchStacks();
+        copyTables(parent);
+    }
+
+    /**
+     * Allocate the move lists and the search stacks
+     */
+    private void initSearchStacks() {
+        moveList = new int[MAX_DEPTH * MAX_POSITION_MOVES];
+        moveScores = new int[MAX_DEPTH * MAX_POSITION_MOVES];
+        moveListStart = new int[MAX_DEPTH];
+        primaryVariation = new int[MAX_DEPTH];
+        searchHistory = new int[13 * BOARD_SQUARES];
+        searchKillers = new int[2 * MAX_DEPTH];
+        pickStage = new int[MAX_DEPTH];
+        pickHashMove = new int[MAX_DEPTH];
+        pickIndex = new int[MAX_DEPTH];
+        pickBadCaptures = new int[MAX_DEPTH];
+        pickQuiets = new int[MAX_DEPTH];
+        threads = 1;
+        helpers = new Searcher[0];
+        helperThreads = new Thread[0];
+    }
+
+    /**
+     * Share the transposition, pawn, eval and perft tables of another searcher
+     *
+     * @param other the searcher to share the tables of
+     */
+    private void copyTables(Searcher other) {
+        hashKeys = other.hashKeys;
+        hashData = other.hashData;
+        pawnHashKeys = other.pawnHashKeys;
+        pawnHashData = other.pawnHashData;
+        evalHashKeys = other.evalHashKeys;
+        evalHashData = other.evalHashData;
+        evalHashMask = other.evalHashMask;
+        hashMask = other.hashMask;
+        hashAge = other.hashAge;
+        perftKeys = other.perftKeys;
+        perftData = other.perftData;
+        perftMask = other.perftMask;
+    }
+
+    /**
+     * Get the position the searcher searches
+     *
+     * @return the position
+     */
+    public Position getPosition() {
+        return pos;
+    }
+
+    /**
+     * Get the score of the last finished depth of the last search
+     *
+     * @return the score, seen from the side to move
+     */
+    public int getSearchScore() {
+        return searchScore;
+    }
+
+    /**
+     * Init the array for getting the MvvLva score for each piece combination
+     */
+    private static void initMvvLva() {
+        for (byte a = wP; a <= bK; a++) {
+            for (byte v = wP; v < bK; v++) {
+                /*
+                 * Loop through all the attacking pieces and set the values.
+                 * The value is calculated by taking the MvvLva value of the victim, add 6 (because 600/100 is 6)
+                 * and subtract the value of the attacker divided by 100.
+                 * This way the moves sorted by score will be most valuable victim first,
+                 * then those are sorted by least valuable attacker.
+                 */
+                MvvLvaScore[v * 13 + a] = MvvLvaValue[v] + 6 - (MvvLvaValue[a] / 100);
+            }
+        }
+    }
+
+    /**
+     * Init the late move reductions table
+     */
+    private static void initReductions() {
+        for (int depth = 1; depth < MAX_DEPTH; depth++) {
+            for (int moveNum = 1; moveNum < MAX_POSITION_MOVES; moveNum++) {
+                lmrReductions[depth * MAX_POSITION_MOVES + moveNum] = (int) (0.75 + Math.log(depth) * Math.log(moveNum) / 2.25);
+            }
+        }
+    }
+
+    /**
+     * Add a capture move to the move list
+     * @param move move of integer format
+     */
+    private void addCaptureMove(int move) {
+        /*
+         * Capture moves are scored by the MvvLva list when added to the list.
+         * In addition all capture moves get + 1 000 000 score in the list, to make sure they are searched
+         * before other moves and before killer moves.
+         * A capture of a piece worth less than the capturing piece might lose material, so it is checked with
+         * the static exchange evaluation, and searched after the killer moves if it does.
+         */
+        byte piece = pos.board[getFromSq(move)];
+        byte captured = getCapturedPiece(move);
+        int base = CAPTURE_SCORE;
+        if (valPieces[piece] > valPieces[captured] && pos.see(move) < 0) base = LOSING_CAPTURE_SCORE;
+        moveList[moveListStart[pos.comPly + 1]] = move;
+        moveScores[moveListStart[pos.comPly + 1]++] = MvvLvaScore[captured * 13 + piece] + base;
+    }
+
+    /**
+     * Add a quiet move to the list
+     * @param move move of integer format
+     */
+    private void addQuietMove(int move) {
+        moveList[moveListStart[pos.comPly + 1]] = move;
+
+        /*
+         * If the move is a killer move, add a bonus to the move ordering score
+         * Otherwise set the move ordering score to the history score value of this move
+         */
+        if (move == searchKillers[pos.comPly]) {
+            moveScores[moveListStart[pos.comPly + 1]++] = 900000;
+        } else if (move == searchKillers[MAX_DEPTH + pos.comPly]) {
+            moveScores[moveListStart[pos.comPly + 1]++] = 800000;
+        } else {
+            moveScores[moveListStart[pos.comPly + 1]++] = searchHistory[pos.board[getFromSq(move)] * BOARD_SQUARES + getToSq(move)];
+        }
+    }
+
+    /**
+     * Add an en passant move
+     * @param move move of integer format
+     */
+    private void addEnPassantMove(int move) {
+        /*
+         * The en passant move is always a capture of pawn takes pawn, so the MvvLva score is always 105 + the 1000000 base
+         */
+        moveList[moveListStart[pos.comPly + 1]] = move;
+        moveScores[moveListStart[pos.comPly + 1]++] = 1000105;
+    }
+
+    /**
+     * Generate all possible capture moves
+     */
+    void generateCaptureMoves() {
+        moveListStart[pos.comPly + 1] = moveListStart[pos.comPly]; //Update the move list
+        byte piece;
+
+        /*
+         * Check the side dependent pawn captures first
+         */
+        if (pos.side == WHITE) {
+            piece = wP;
+            for (int i = 0; i < pos.numPieces[piece]; i++) { //Loop through all of the squares with this piece
+                byte sq = pos.pieceListSquare[piece * 10 + i];
+                /*
+                 * Check if there is a black on the diagonal tiles
+                 * If the pawn is on the 7th rank add promotion moves
+                 */
+                if (pos.board[sq + 9] != OFFBOARD && colPieces[pos.board[sq + 9]] == BLACK) {
+                    if (getRank[sq] == 6) {
+                        addCaptureMove(getMove(sq, sq + 9, pos.board[sq + 9], wN, 0));
+                        addCaptureMove(getMove(sq, sq + 9, pos.board[sq + 9], wB, 0));
+                        addCaptureMove(getMove(sq, sq + 9, pos.board[sq + 9], wR, 0));
+                        addCaptureMove(getMove(sq, sq + 9, pos.board[sq + 9], wQ, 0));
+                    } else {
+                        addCaptureMove(getMove(sq, sq + 9, pos.board[sq + 9], EMPTY, 0));
+                    }
+                }
+                if (pos.board[sq + 11] != OFFBOARD && colPieces[pos.board[sq + 11]] == BLACK) {
+                    if (getRank[sq] == 6) {
+                        addCaptureMove(getMove(sq, sq + 11, pos.board[sq + 11], wN, 0));
+                        addCaptureMove(getMove(sq, sq + 11, pos.board[sq + 11], wB, 0));
+                        addCaptureMove(getMove(sq, sq + 11, pos.board[sq + 11], wR, 0));
+                        addCaptureMove(getMove(sq, sq + 11, pos.board[sq + 11], wQ, 0));
+                    } else {
+                        addCaptureMove(getMove(sq, sq + 11, pos.board[sq + 11], EMPTY, 0));
+                    }
+                }
+
+                /*
+                 * Check if the en passant square is available for capture
+                 */
+                if (pos.enPas != NO_SQ) {
+                    if (pos.enPas == sq + 9) {
+                        addEnPassantMove(getMove(sq, sq + 9, EMPTY, EMPTY, MFLAG_ENPASSANT));
+                    } else if (pos.enPas == sq + 11) {
+                        addEnPassantMove(getMove(sq, sq + 11, EMPTY, EMPTY, MFLAG_ENPASSANT));
+                    }
+                }
+            }
+
+            /*
+             * Set the piece to a white knight
+             */
+            piece = wN;
+        } else {
+            piece = bP;
+
+            /*
+             * Same for black
+             */
+
+            for (int i = 0; i < pos.numPieces[piece]; i++) {
+                byte sq = pos.pieceListSquare[piece * 10 + i];
+                if (pos.board[sq - 9] != OFFBOARD && colPieces[pos.board[sq - 9]] == WHITE) {
+                    if (getRank[sq] == 1) {
+                        addCaptureMove(getMove(sq, sq - 9, pos.board[sq - 9], bN, 0));
+                        addCaptureMove(getMove(sq, sq - 9, pos.board[sq - 9], bB, 0));
+                        addCaptureMove(getMove(sq, sq - 9, pos.board[sq - 9], bR, 0));
+                        addCaptureMove(getMove(sq, sq - 9, pos.board[sq - 9], bQ, 0));
+                    } else {
+                        addCaptureMove(getMove(sq, sq - 9, pos.board[sq - 9], EMPTY, 0));
+                    }
+                }
+                if (pos.board[sq - 11] != OFFBOARD && colPieces[pos.board[sq - 11]] == WHITE) {
+                    if (getRank[sq] == 1) {
+                        addCaptureMove(getMove(sq, sq - 11, pos.board[sq - 11], bN, 0));
+                        addCaptureMove(getMove(sq, sq - 11, pos.board[sq - 11], bB, 0));
+                        addCaptureMove(getMove(sq, sq - 11, pos.board[sq - 11], bR, 0));
+                        addCaptureMove(getMove(sq, sq - 11, pos.board[sq - 11], bQ, 0));
+                    } else {
+                        addCaptureMove(getMove(sq, sq - 11, pos.board[sq - 11], EMPTY, 0));
+                    }
+                }
+                if (pos.enPas != NO_SQ) {
+                    if (pos.enPas == sq - 9) {
+                        addEnPassantMove(getMove(sq, sq - 9, EMPTY, EMPTY, MFLAG_ENPASSANT));
+                    } else if (pos.enPas == sq - 11) {
+                        addEnPassantMove(getMove(sq, sq - 11, EMPTY, EMPTY, MFLAG_ENPASSANT));
+                    }
+                }
+            }
+
+            /*
+             * Set the piece to a black knight
+             */
+            piece = bN;
+        }
+
+        /*
+         * Now the piece is equal to a knight of the side to move
+         * Loop through all of the pieces until you pass the king of the color.
+         * The king's piece number is 6 or 12, so the next piece is 7 or 13.
+         * While the remainder is not 1 (i. e. the piece number is not 7 or 13)
+         * Increment and loop through the pieces.
+         * This will loop through all the non pawn pieces of the color to move.
+         */
+
+        long enemy = pos.sideBitboards[pos.side ^ 1];
+        while (piece % 6 != 1) {
+            /*
+             * Loop through all the squares for this type
+             */
+            for (int i = 0; i < pos.numPieces[piece]; i++) {
+                int sq = pos.pieceListSquare[piece * 10 + i];
+
+                /*
+                 * Look up the attacked squares of the piece, every attacked piece of the opposite color can be captured
+                 */
+                long captures = pos.getPieceAttacks(piece, getSquare64[sq]) & enemy;
+                while (captures != 0) {
+                    int t_sq = getSquare120[Long.numberOfTrailingZeros(captures)];
+                    addCaptureMove(getMove(sq, t_sq, pos.board[t_sq], EMPTY, 0));
+                    captures &= captures - 1;
+                }
+            }
+            piece++;
+        }
+    }
+
+    /**
+     * Generate all possible moves, the captures first and then the quiet moves
+     */
+    void generateMoves() {
+        generateCaptureMoves();
+        generateQuietMoves();
+    }
+
+    /**
+     * Generate all possible moves that do not capture, and add them after the moves already in the list
+     */
+    private void generateQuietMoves() {
+        byte piece;
+
+        if (pos.side == WHITE) {
+            piece = wP;
+
+            for (int i = 0; i < pos.numPieces[piece]; i++) {
+                byte sq = pos.pieceListSquare[piece * 10 + i];
+                /*
+                 * If the square in front of a pawn is empty, add a pawn move
+                 */
+                if (pos.board[sq + 10] == EMPTY) {
+                    if (getRank[sq] == 1 && pos.board[sq + 20] == EMPTY) {
+                        /*
+                         * If the pawn is on the 2nd rank, add a pawn move,
+                         * and a pawn start move if the square 2 tiles in front is empty
+                         */
+                        addQuietMove(getMove(sq, sq + 10, EMPTY, EMPTY, 0));
+                        addQuietMove(getMove(sq, sq + 20, EMPTY, EMPTY, MFLAG_PAWNSTART));
+                    } else if (getRank[sq] == 6) {
+                        /*
+                         * If the pawn is on the 7th rank add promotion moves
+                         */
+                        addQuietMove(getMove(sq, sq + 10, EMPTY, wN, 0));
+                        addQuietMove(getMove(sq, sq + 10, EMPTY, wB, 0));
+                        addQuietMove(getMove(sq, sq + 10, EMPTY, wR, 0));
+                        addQuietMove(getMove(sq, sq + 10, EMPTY, wQ, 0));
+                    } else {
+                        addQuietMove(getMove(sq, sq + 10, EMPTY, EMPTY, 0));
+                    }
+                }
+            }
+
+            /*
+             * If white can castle king side and the space in between is empty, add a castle move
+             */
+            if ((pos.castlePerm & WKCA) != 0) {
+                if (pos.board[F1] == EMPTY && pos.board[G1] == EMPTY) {
+                    if (!pos.isAttacked(F1, BLACK) && !pos.isAttacked(E1, BLACK)) {
+                        /*
+                         * White can castle king side
+                         */
+                        addQuietMove(getMove(E1, G1, EMPTY, EMPTY, MFLAG_CASTLE));
+                    }
+                }
+            }
+
+            /*
+             * If white can castle queen side and the space in between is empty, add a castle move
+             */
+            if ((pos.castlePerm & WQCA) != 0) {
+                if (pos.board[B1] == EMPTY && pos.board[C1] == EMPTY && pos.board[D1] == EMPTY) {
+                    if (!pos.isAttacked(D1, BLACK) && !pos.isAttacked(E1, BLACK)) {
+                        /*
+                         * White can castle queen side
+                         */
+                        addQuietMove(getMove(E1, C1, EMPTY, EMPTY, MFLAG_CASTLE));
+                    }
+                }
+            }
+
+            piece = wN;
+        } else {
+            /*
+             * Same for black
+             */
+            piece = bP;
+
+            for (int i = 0; i < pos.numPieces[piece]; i++) {
+                byte sq = pos.pieceListSquare[piece * 10 + i];
+                if (pos.board[sq - 10] == EMPTY) {
+                    if (getRank[sq] == 6 && pos.board[sq - 20] == EMPTY) {
+                        addQuietMove(getMove(sq, sq - 20, EMPTY, EMPTY, MFLAG_PAWNSTART));
+                        addQuietMove(getMove(sq, sq - 10, EMPTY, EMPTY, 0));
+                    } else if (getRank[sq] == 1) {
+                        addQuietMove(getMove(sq, sq - 10, EMPTY, bN, 0));
+                        addQuietMove(getMove(sq, sq - 10, EMPTY, bB, 0));
+                        addQuietMove(getMove(sq, sq - 10, EMPTY, bR, 0));
+                        addQuietMove(getMove(sq, sq - 10, EMPTY, bQ, 0));
+                    } else {
+                        addQuietMove(getMove(sq, sq - 10, EMPTY, EMPTY, 0));
+                    }
+                }
+            }
+
+            if ((pos.castlePerm & BKCA) != 0) {
+                if (pos.board[F8] == EMPTY && pos.board[G8] == EMPTY) {
+                    if (!pos.isAttacked(F8, WHITE) && !pos.isAttacked(E8, WHITE)) {
+                        /*
+                         * Black can castle king side
+                         */
+                        addQuietMove(getMove(E8, G8, EMPTY, EMPTY, MFLAG_CASTLE));
+                    }
+                }
+            }
+            if ((pos.castlePerm & BQCA) != 0) {
+                if (pos.board[B8] == EMPTY && pos.board[C8] == EMPTY && pos.board[D8] == EMPTY) {
+                    if (!pos.isAttacked(D8, WHITE) && !pos.isAttacked(E8, WHITE)) {
+                        /*
+                         * Black can castle queen side
+                         */
+                        addQuietMove(getMove(E8, C8, EMPTY, EMPTY, MFLAG_CASTLE));
+                    }
+                }
+            }
+
+            piece = bN;
+        }
+
+        /*
+         * Same loop as for capture moves
+         */
+        while (piece % 6 != 1) {
+            /*
+             * Loop through all the squares for this type
+             */
+            for (int i = 0; i < pos.numPieces[piece]; i++) {
+                int sq = pos.pieceListSquare[piece * 10 + i];
+
+                /*
+                 * Look up the attacked squares of the piece. If it's an empty square it can move there.
+                 */
+                long quiets = pos.getPieceAttacks(piece, getSquare64[sq]) & ~pos.occupied;
+                while (quiets != 0) {
+                    int t_sq = getSquare120[Long.numberOfTrailingZeros(quiets)];
+                    addQuietMove(getMove(sq, t_sq, EMPTY, EMPTY, 0));
+                    quiets &= quiets - 1;
+                }
+            }
+            piece++;
+        }
+    }
+
+    /**
+     * Order the move list so that the next move in the list is the one with the highest score
+     * @param moveNum the move list index start position
+     */
+    private void pickNextMove(int moveNum) {
+        pickNextMove(moveNum, moveListStart[pos.comPly + 1]);
+    }
+
+    /**
+     * Order a part of the move list so that the next move in it is the one with the highest score
+     * @param moveNum the move list index start position
+     * @param end the move list index after the last move of the part
+     */
+    private void pickNextMove(int moveNum, int end) {
+        int bestscore = -INF;
+        int bestNum = moveNum;
+
+        /*
+         * Loop through all the moves after this one in the move list, and find the one with the best score
+         */
+        for (int i = moveNum; i < end; i++) {
+            if (moveScores[i] > bestscore) {
+                bestscore = moveScores[i];
+                bestNum = i;
+            }
+        }
+
+        /*
+         * Swap the move on top of the list with the best one, so that the next move search will be the best one
+         */
+        if (bestNum != moveNum) {
+            int tmp = moveScores[moveNum];
+            moveScores[moveNum] = moveScores[bestNum];
+            moveScores[bestNum] = tmp;
+            tmp = moveList[moveNum];
+            moveList[moveNum] = moveList[bestNum];
+            moveList[bestNum] = tmp;
+        }
+    }
+
+    /**
+     * Start the move picker of the current ply
+     * @param hashMove the hash move of the position, 0 if there is none
+     */
+    private void initMovePicker(int hashMove) {
+        /*
+         * Nothing is generated yet, so the move list of the next ply starts where this one starts
+         */
+        moveListStart[pos.comPly + 1] = moveListStart[pos.comPly];
+        pickStage[pos.comPly] = PICK_HASH;
+        pickHashMove[pos.comPly] = hashMove;
+    }
+
+    /**
+     * Get the next move to search from the move picker of the current ply.
+     * The hash move comes first, without generating any moves. Then the captures are generated and the ones
+     * that do not lose material are picked by their MvvLva score, followed by the killer moves.
+     * Then the quiet moves are generated and picked by their history score, and the losing captures come last.
+     * The moves are only pseudo legal, just like the generated ones.
+     * @return the next move of integer format, 0 when there are no more moves
+     */
+    private int nextMove() {
+        int hashMove = pickHashMove[pos.comPly];
+        while (true) {
+            switch (pickStage[pos.comPly]) {
+                case PICK_HASH:
+                    pickStage[pos.comPly] = PICK_GEN_CAPTURES;
+                    if (hashMove != 0 && pos.isPseudoLegal(hashMove)) return hashMove;
+                    pickHashMove[pos.comPly] = hashMove = 0;
+                    break;
+                case PICK_GEN_CAPTURES:
+                    generateCaptureMoves();
+                    pickIndex[pos.comPly] = moveListStart[pos.comPly];
+                    pickStage[pos.comPly] = PICK_GOOD_CAPTURES;
+                    break;
+                case PICK_GOOD_CAPTURES:
+                    while (pickIndex[pos.comPly] < moveListStart[pos.comPly + 1]) {
+                        int i = pickIndex[pos.comPly];
+                        pickNextMove(i);
+                        if (moveScores[i] < CAPTURE_SCORE) break; // The rest are losing captures
+                        pickIndex[pos.comPly]++;
+                        if (moveList[i] != hashMove) return moveList[i];
+                    }
+                    pickBadCaptures[pos.comPly] = pickIndex[pos.comPly];
+                    pickStage[pos.comPly] = PICK_KILLER1;
+                    break;
+                case PICK_KILLER1:
+                    pickStage[pos.comPly] = PICK_KILLER2;
+                    int killer = searchKillers[pos.comPly];
+                    if (isPickableKiller(killer, hashMove)) return killer;
+                    break;
+                case PICK_KILLER2:
+                    pickStage[pos.comPly] = PICK_GEN_QUIETS;
+                    killer = searchKillers[MAX_DEPTH + pos.comPly];
+                    if (killer != searchKillers[pos.comPly] && isPickableKiller(killer, hashMove)) return killer;
+                    break;
+                case PICK_GEN_QUIETS:
+                    pickQuiets[pos.comPly] = moveListStart[pos.comPly + 1];
+                    generateQuietMoves();
+                    pickIndex[pos.comPly] = pickQuiets[pos.comPly];
+                    pickStage[pos.comPly] = PICK_QUIETS;
+                    break;
+                case PICK_QUIETS:
+                    while (pickIndex[pos.comPly] < moveListStart[pos.comPly + 1]) {
+                        int i = pickIndex[pos.comPly]++;
+                        pickNextMove(i);
+                        int move = moveList[i];
+                        if (move != hashMove && move != searchKillers[pos.comPly] && move != searchKillers[MAX_DEPTH + pos.comPly]) {
+                            return move;
+                        }
+                    }
+                    pickIndex[pos.comPly] = pickBadCaptures[pos.comPly];
+                    pickStage[pos.comPly] = PICK_BAD_CAPTURES;
+                    break;
+                case PICK_BAD_CAPTURES:
+                    while (pickIndex[pos.comPly] < pickQuiets[pos.comPly]) {
+                        int i = pickIndex[pos.comPly]++;
+                        pickNextMove(i, pickQuiets[pos.comPly]);
+                        if (moveList[i] != hashMove) return moveList[i];
+                    }
+                    pickStage[pos.comPly] = PICK_DONE;
+                    break;
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    /**
+     * Check if a killer move can be searched in the killer stage of the move picker.
+     * Only killer moves that are generated as quiet moves are picked, en passant captures are picked with the captures.
+     * @param killer the killer move
+     * @param hashMove the hash move, which has been searched already
+     * @return boolean if the killer move should be searched
+     */
+    private boolean isPickableKiller(int killer, int hashMove) {
+        return killer != 0 && killer != hashMove && (killer & MFLAG_ENPASSANT) == 0 && pos.isPseudoLegal(killer);
+    }
+
+    /**
+     * Generate all the legal moves of the position. In double check only the king moves are generated.
+     * The number of legal moves is moveListStart[comPly + 1] - moveListStart[comPly].
+     */
+    void generateLegalMoves() {
+        pos.updatePins();
+        long checkers = pos.plyCheckers[pos.comPly];
+        if (checkers != 0 && (checkers & (checkers - 1)) != 0) {
+            generateKingMoves();
+        } else {
+            generateMoves();
+        }
+
+        /*
+         * Keep only the legal moves, in the same order
+         */
+        int end = moveListStart[pos.comPly];
+        for (int i = moveListStart[pos.comPly]; i < moveListStart[pos.comPly + 1]; i++) {
+            if (pos.isLegal(moveList[i])) {
+                moveList[end] = moveList[i];
+                moveScores[end++] = moveScores[i];
+            }
+        }
+        moveListStart[pos.comPly + 1] = end;
+    }
+
+    /**
+     * Generate the moves of the king of the side to move, without castling
+     */
+    private void generateKingMoves() {
+        moveListStart[pos.comPly + 1] = moveListStart[pos.comPly];
+        int sq = pos.pieceListSquare[sidesKings[pos.side] * 10];
+        long attacks = Bitboards.kingAttacks[getSquare64[sq]];
+        long captures = attacks & pos.sideBitboards[pos.side ^ 1];
+        while (captures != 0) {
+            int t_sq = getSquare120[Long.numberOfTrailingZeros(captures)];
+            addCaptureMove(getMove(sq, t_sq, pos.board[t_sq], EMPTY, 0));
+            captures &= captures - 1;
+        }
+        long quiets = attacks & ~pos.occupied;
+        while (quiets != 0) {
+            int t_sq = getSquare120[Long.numberOfTrailingZeros(quiets)];
+            addQuietMove(getMove(sq, t_sq, EMPTY, EMPTY, 0));
+            quiets &= quiets - 1;
+        }
+    }
+
+    /**
+     * Recursive method for calculating the best score after a given depth using alpha beta search
+     * @param alpha the current max for the maximizer
+     * @param beta the current min for the minimizer
+     * @param depth the current depth
+     * @param doNull if a null move may be tried in this position, false right after a null move
+     * @return the best score
+     */
+    private int alphaBeta(int alpha, int beta, int depth, boolean doNull) {
+        searchnodes++;
+        if ((searchnodes & (CHECK_NODES - 1)) == 0) checkUp();
+
+        /*
+         * If the search has been stopped, unwind. The score is never used.
+         */
+        if (!searching) return 0;
+
+        /*
+         * If the depth is zero, calculate capture moves to avoid the horizon effect
+         */
+        if (depth <= 0) {
+            return quiescence(alpha, beta);
+        }
+
+        /*
+         * If it's a repetition or more than fifty moves, the score is a draw
+         */
+        if ((pos.isRepetition() || pos.fiftyMove >= 100) && pos.comPly != 0) return 0;
+
+        /*
+         * If the minimizer's lowest is better than a mate, return it
+         */
+        if (beta <= -MATE_SCORE) {
+            return beta;
+        }
+
+        /*
+         * If we have reached the max depth, return the position evaluation.
+         * The last ply of the per ply arrays is only used as the end of the move list of the ply before it.
+         */
+        if (pos.comPly >= MAX_DEPTH - 1) {
+            return evaluate();
+        }
+
+        /*
+         * If the king is in check, increase the depth, to avoid missing forcing lines that lead to mate
+         */
+        pos.updatePins();
+        boolean inCheck = pos.plyCheckers[pos.comPly] != 0;
+        if (inCheck) {
+            depth++;
+        }
+
+        /*
+         * If this position has already been searched at least as deep, the stored score can be used directly.
+         * The root is always searched so that we get a best move for it.
+         */
+        int score = probeHashEntry(alpha, beta, depth);
+        if (score != NO_SCORE && pos.comPly != 0) {
+            return score;
+        }
+        int pvMove = hashMove;
+
+        /*
+         * Null move pruning: if the position is still at least beta after passing the turn and searching
+         * with a reduced depth, a real move is very likely to be as well, so the node is cut off.
+         * The reduction is larger at high depths. It is not tried in check, where passing is illegal,
+         * or with only pawns left, where zugzwang makes passing better than any move.
+         * At high depths the cut off is verified by a reduced search of the position itself.
+         */
+        if (doNull && !inCheck && pos.comPly != 0 && depth >= NULL_MIN_DEPTH && pos.hasNonPawnMaterial(pos.side)
+                && evaluate() >= beta) {
+            int r = depth > 6 ? 3 : 2;
+            moveListStart[pos.comPly + 1] = moveListStart[pos.comPly]; // No moves are generated for the null move ply
+            pos.makeNullMove();
+            score = -alphaBeta(-beta, -beta + 1, depth - 1 - r, false);
+            pos.takeNullMove();
+            if (!searching) return 0;
+
+            if (score >= beta && Math.abs(score) < MATE_SCORE - MAX_DEPTH) {
+                if (NULL_VERIFY && depth >= NULL_VERIFY_DEPTH) {
+                    score = alphaBeta(beta - 1, beta, depth - 1 - r, false);
+                    if (!searching) return 0;
+                    if (score >= beta) return beta;
+                } else {
+                    return beta;
+                }
+            }
+        }
+
+        int legalmove = 0;
+        int bestMove = 0;
+        int alphaold = alpha;
+
+        /*
+         * Start searching the hash move first, because the best move of previous depths
+         * is most likely to be good the next depth as well.
+         * Loop through all of the moves in the order of the move picker
+         */
+        initMovePicker(pvMove);
+        int move;
+        while ((move = nextMove()) != 0) {
+            if (!pos.isLegal(move)) continue;
+            boolean quiet = (move & MFLAG_CAPTURE) == 0 && getPromotedPiece(move) == EMPTY;
+            int history = searchHistory[pos.board[getFromSq(move)] * BOARD_SQUARES + getToSq(move)];
+            boolean killer = move == searchKillers[pos.comPly] || move == searchKillers[MAX_DEPTH + pos.comPly];
+            pos.playMove(move);
+
+            /*
+             * The move is legal, set the score to the opposite alpha beta search for the next depth,
+             * because every other move the players want to min and max their results.
+             * Revert the move afterwards.
+             */
+            legalmove++;
+            if (legalmove == 1) {
+                /*
+                 * The first move is expected to be the best, so it is searched with the full window
+                 */
+                score = -alphaBeta(-beta, -alpha, depth - 1, true);
+            } else {
+                /*
+                 * Principal variation search: the later moves are only searched to prove that they are not
+                 * better than alpha, with a null window. Late quiet moves are also searched at a reduced depth,
+                 * less reduced if they are killer moves or have a good history score.
+                 * Captures, promotions, checks and check evasions are never reduced.
+                 * If a move turns out better than alpha, it is searched again at full depth and window.
+                 */
+                int reduction = 0;
+                if (quiet && !inCheck && depth >= LMR_MIN_DEPTH && legalmove > LMR_MIN_MOVES
+                        && !pos.isAttacked(pos.pieceListSquare[sidesKings[pos.side] * 10], pos.side ^ 1)) {
+                    reduction = lmrReductions[Math.min(depth, MAX_DEPTH - 1) * MAX_POSITION_MOVES + Math.min(legalmove, MAX_POSITION_MOVES - 1)];
+                    if (killer) reduction--;
+                    if (history > depth * depth) reduction--;
+                    reduction = Math.max(0, Math.min(reduction, depth - 2));
+                }
+                score = -alphaBeta(-alpha - 1, -alpha, depth - 1 - reduction, true);
+                if (score > alpha && reduction > 0) {
+                    score = -alphaBeta(-alpha - 1, -alpha, depth - 1, true);
+                }
+                if (score > alpha && score < beta) {
+                    score = -alphaBeta(-beta, -alpha, depth - 1, true);
+                }
+            }
+            pos.revertMove();
+
+            /*
+             * The score of a stopped search is not reliable, so it must not change the best move or
+             * be stored in the transposition table
+             */
+            if (!searching) return 0;
+
+            /*
+             * If the score is better than the current best, update the current best, and check if we have a beta
+             * cut off. If the move is a non capture one, it's classified as a killer move, and added to the killer
+             * move list. Otherwise, the add the score in the form of the depth * depth to the move score.
+             * This means that if a move is good in many positions, it will most likely be good in this position as
+             * well. Return the beta score if we had a beta cut off, because that is the best possible score.
+             */
+            if (score > alpha) {
+                if (score >= beta) {
+                    if (legalmove == 1) {
+                        searchbcf++;
+                    }
+                    searchbc++;
+                    if ((move & MFLAG_CAPTURE) == 0) {
+                        searchKillers[MAX_DEPTH + pos.comPly] = searchKillers[pos.comPly];
+                        searchKillers[pos.comPly] = move;
+                    }
+                    storeHashEntry(move, beta, HFBETA, depth);
+                    return beta;
+                }
+                if ((move & MFLAG_CAPTURE) == 0) {
+                    searchHistory[pos.board[getFromSq(move)] * BOARD_SQUARES + getToSq(move)] += depth * depth;
+                }
+                alpha = score;
+                bestMove = move;
+            }
+        }
+
+        /*
+         * If there was no legal moves, return mate score if the king is in check, otherwise return 0 for a draw
+         */
+        if (legalmove == 0) {
+            if (inCheck) {
+                return -MATE_SCORE + pos.comPly;
+            } else {
+                return 0;
+            }
+        }
+
+        /*
+         * If the alpha was improved, store this move as the exact score of the position,
+         * otherwise the score is only an upper bound
+         */
+        if (alpha != alphaold) {
+            storeHashEntry(bestMove, alpha, HFEXACT, depth);
+        } else {
+            storeHashEntry(0, alpha, HFALPHA, depth);
+        }
+
+        /*
+         * Return the best possible score
+         */
+        return alpha;
+    }
+
+    /**
+     * Recursively calculate the quiescence score the same way as alpha beta, except calculate only capture moves.
+     * This is to avoid the horizon effect
+     * @param alpha the maximizers best score
+     * @param beta the minimizers best score
+     * @return the best possible score
+     */
+    private int quiescence(int alpha, int beta) {
+        /*
+         * This method works exactly like alpha beta
+         */
+        searchnodes++;
+        if ((searchnodes & (CHECK_NODES - 1)) == 0) checkUp();
+
+        if (!searching) return 0;
+
+        if ((pos.isRepetition() || pos.fiftyMove >= 100) && pos.comPly != 0) return 0;
+
+        if (pos.comPly >= MAX_DEPTH - 1) {
+            return evaluate();
+        }
+
+        /*
+         * Any stored entry is searched at least as deep as the quiescence search
+         */
+        int score = probeHashEntry(alpha, beta, 0);
+        if (score != NO_SCORE) {
+            return score;
+        }
+        int pvMove = hashMove;
+
+        int alphaorig = alpha;
+        score = evaluate();
+
+        if (score >= beta) {
+            return beta;
+        }
+
+        if (score > alpha) {
+            alpha = score;
+        }
+
+        generateCaptureMoves();
+        pos.updatePins();
+        int legalmove = 0;
+        int bestMove = 0;
+        int alphaold = alpha;
+
+        if (pvMove != 0) {
+            for (int i = moveListStart[pos.comPly]; i < moveListStart[pos.comPly + 1]; i++) {
+                if (moveList[i] == pvMove) {
+                    moveScores[i] = 2000000;
+                    break;
+                }
+            }
+        }
+
+        for (int i = moveListStart[pos.comPly]; i < moveListStart[pos.comPly + 1]; i++) {
+            pickNextMove(i);
+
+            /*
+             * The moves are picked from the highest score, so once a capture that loses material by the static
+             * exchange evaluation is reached, the rest lose material as well. They can not raise alpha, so prune them.
+             */
+            if (moveScores[i] < CAPTURE_SCORE) break;
+            int move = moveList[i];
+            if (!pos.isLegal(move)) continue;
+            pos.playMove(move);
+            legalmove++;
+            score = -quiescence(-beta, -alpha);
+            pos.revertMove();
+            if (!searching) return 0;
+            if (score > alpha) {
+                if (score >= beta) {
+                    if (legalmove == 1) {
+                        searchbcf++;
+                    }
+                    searchbc++;
+                    storeHashEntry(move, beta, HFBETA, 0);
+                    return beta;
+                }
+                alpha = score;
+                bestMove = move;
+            }
+        }
+
+        /*
+         * The stand pat score is exact as well, as long as it improved the original alpha
+         */
+        storeHashEntry(alpha != alphaold ? bestMove : 0, alpha, alpha != alphaorig ? HFEXACT : HFALPHA, 0);
+
+        return alpha;
+    }
+
+    /**
+     * Allocate the transposition table
+     *
+     * @param megabytes the size of the table in megabytes
+     */
+    void initHashTable(int megabytes) {
+        /*
+         * The number of buckets must be a power of two so that the bucket can be found by position key & hashMask
+         */
+        long entries = (long) megabytes * 1024 * 1024 / HASH_ENTRY_BYTES;
+        int buckets = Integer.highestOneBit((int) Math.min(Math.max(entries / HASH_BUCKET_ENTRIES, 1), 1 << 29));
+        hashKeys = new long[buckets * HASH_BUCKET_ENTRIES];
+        hashData = new long[buckets * HASH_BUCKET_ENTRIES];
+        hashMask = buckets - 1;
+        hashAge = 0;
+    }
+
+    /**
+     * Clear all the entries in the transposition table
+     */
+    public void clearHashTable() {
+        for (int i = 0; i < hashKeys.length; i++) {
+            hashKeys[i] = 0;
+            hashData[i] = 0;
+        }
+        hashAge = 0;
+    }
+
+    /**
+     * Clear the transposition table, the pawn hash table and the evaluation cache,
+     * so that the next search does not depend on the searches before it
+     */
+    public void clearTables() {
+        clearHashTable();
+        Arrays.fill(pawnHashKeys, 0);
+        Arrays.fill(pawnHashData, 0);
+        if (evalHashKeys != null) {
+            Arrays.fill(evalHashKeys, 0);
+            Arrays.fill(evalHashData, 0);
+        }
+    }
+
+    /**
+     * Pack the transposition table entry data into a long
+     *
+     * @param move the best move
+     * @param score the score
+     * @param flag the bound flag
+     * @param depth the depth searched
+     * @return the packed entry data
+     */
+    private long packHashData(int move, int score, int flag, int depth) {
+        return (move & 0xFFFFFFL) | ((long) (depth & 0xFF) << 24) | ((long) flag << 32) | ((long) (hashAge & 0x3F) << 34) | ((long) score << 40);
+    }
+
+    /**
+     * Get the best move out of the packed hash entry data
+     *
+     * @param data the packed entry data
+     * @return move of integer format
+     */
+    private static int getHashMove(long data) {
+        return (int) (data & 0xFFFFFF);
+    }
+
+    /**
+     * Get the searched depth out of the packed hash entry data
+     *
+     * @param data the packed entry data
+     * @return the depth
+     */
+    private static int getHashDepth(long data) {
+        return (int) ((data >> 24) & 0xFF);
+    }
+
+    /**
+     * Get the bound flag out of the packed hash entry data
+     *
+     * @param data the packed entry data
+     * @return the bound flag
+     */
+    private static int getHashFlag(long data) {
+        return (int) ((data >> 32) & 0x3);
+    }
+
+    /**
+     * Get the age out of the packed hash entry data
+     *
+     * @param data the packed entry data
+     * @return the age
+     */
+    private static int getHashAge(long data) {
+        return (int) ((data >> 34) & 0x3F);
+    }
+
+    /**
+     * Get the score out of the packed hash entry data
+     *
+     * @param data the packed entry data
+     * @return the score
+     */
+    private static int getHashScore(long data) {
+        return (int) (data >> 40);
+    }
+
+    /**
+     * Probe the transposition table for the current position.
+     * The hash move of the entry is stored in hashMove for move ordering
+     *
+     * @param alpha the maximizers best score
+     * @param beta the minimizers best score
+     * @param depth the depth that is going to be searched
+     * @return the score if the entry gives a cut off, otherwise NO_SCORE
+     */
+    private int probeHashEntry(int alpha, int beta, int depth) {
+        hashProbes++;
+        hashMove = 0;
+        int index = (int) (pos.posKey & hashMask) * HASH_BUCKET_ENTRIES;
+
+        for (int i = index; i < index + HASH_BUCKET_ENTRIES; i++) {
+            long data = hashData[i];
+            if ((hashKeys[i] ^ data) != pos.posKey || getHashFlag(data) == HFNONE) continue;
+
+            hashHits++;
+            hashMove = getHashMove(data);
+            if (getHashDepth(data) < depth) return NO_SCORE;
+
+            /*
+             * Mate scores are stored relative to the position, so adjust them to the distance from the root
+             */
+            int score = getHashScore(data);
+            if (score > MATE_SCORE - MAX_DEPTH) {
+                score -= pos.comPly;
+            } else if (score < -MATE_SCORE + MAX_DEPTH) {
+                score += pos.comPly;
+            }
+
+            /*
+             * An upper bound can only cut off if it is not better than alpha,
+             * and a lower bound if it is not worse than beta
+             */
+            switch (getHashFlag(data)) {
+                case HFALPHA:
+                    if (score <= alpha) {
+                        hashCuts++;
+                        return alpha;
+                    }
+                    break;
+                case HFBETA:
+                    if (score >= beta) {
+                        hashCuts++;
+                        return beta;
+                    }
+                    break;
+                case HFEXACT:
+                    hashCuts++;
+                    return score;
+                default:
+                    break;
+            }
+            return NO_SCORE;
+        }
+
+        return NO_SCORE;
+    }
+
+    /**
+     * Store an entry for the current position in the transposition table
+     *
+     * @param move the best move, 0 if there was none
+     * @param score the score
+     * @param flag the bound flag
+     * @param depth the depth searched
+     */
+    private void storeHashEntry(int move, int score, int flag, int depth) {
+        int index = (int) (pos.posKey & hashMask) * HASH_BUCKET_ENTRIES;
+
+        /*
+         * The first entry of the bucket is replaced if it is the same position, if the new depth is at least
+         * as deep, or if it is left over from an earlier search. Otherwise the second entry is always replaced.
+         */
+        long data = hashData[index];
+        if ((hashKeys[index] ^ data) != pos.posKey && getHashDepth(data) > depth && getHashAge(data) == (hashAge & 0x3F)) {
+            index++;
+            data = hashData[index];
+        }
+
+        /*
+         * Keep the old best move if we don't have a new one for the same position
+         */
+        if (move == 0 && (hashKeys[index] ^ data) == pos.posKey) {
+            move = getHashMove(data);
+        }
+
+        /*
+         * Mate scores are stored relative to this position instead of the root
+         */
+        if (score > MATE_SCORE - MAX_DEPTH) {
+            score += pos.comPly;
+        } else if (score < -MATE_SCORE + MAX_DEPTH) {
+            score -= pos.comPly;
+        }
+
+        data = packHashData(move, score, flag, depth);
+        hashKeys[index] = pos.posKey ^ data;
+        hashData[index] = data;
+    }
+
+    /**
+     * Get how full the transposition table is in permille, by sampling the first entries
+     * for entries written in the current search
+     *
+     * @return the number of entries per thousand used
+     */
+    private int getHashFull() {
+        int samples = Math.min(1000, hashData.length);
+        int used = 0;
+        for (int i = 0; i < samples; i++) {
+            long data = hashData[i];
+            if (getHashFlag(data) != HFNONE && getHashAge(data) == (hashAge & 0x3F)) used++;
+        }
+        return used * 1000 / samples;
+    }
+
+    /**
+     * Get the percentage of the hash probes that found the position
+     *
+     * @return the hit rate in percent
+     */
+    private int getHashHitRate() {
+        return hashProbes == 0 ? 0 : (int) Math.round(hashHits * 100.0 / hashProbes);
+    }
+
+    /**
+     * Allocate the soft and hard time limits for the next move.
+     * With a fixed move time the whole time is used. Otherwise the remaining time is split over the moves to go,
+     * with most of the increment added. The soft limit is the time we aim to use, and the hard limit
+     * allows a few times more for a depth that is already running, but never more than the remaining time.
+     *
+     * @param time the remaining time on the clock, 0 if there is no clock
+     * @param inc the increment per move
+     * @param movesToGo the number of moves until the next time control, 0 if it is not known
+     * @param moveTime the fixed time for the move, 0 if there is no fixed move time
+     */
+    void setTimeLimits(long time, long inc, int movesToGo, long moveTime) {
+        if (moveTime > 0) {
+            softTime = Math.max(1, moveTime - MOVE_OVERHEAD);
+            hardTime = softTime;
+        } else if (time > 0) {
+            long available = Math.max(1, time - MOVE_OVERHEAD);
+            int moves = movesToGo > 0 ? Math.min(movesToGo, DEFAULT_MOVES_TO_GO) : DEFAULT_MOVES_TO_GO;
+            softTime = Math.min(available, time / moves + inc * 3 / 4);
+            hardTime = Math.min(available, Math.max(softTime, Math.min(softTime * HARD_LIMIT_FACTOR, time / 3 + inc)));
+            softTime = Math.max(1, softTime);
+            hardTime = Math.max(1, hardTime);
+        } else {
+            softTime = 0;
+            hardTime = 0;
+        }
+        softStopTime = 0;
+        stopTime = 0;
+    }
+
+    /**
+     * Start the clock of the allocated time limits, from now
+     */
+    void startClock() {
+        long now = System.currentTimeMillis();
+        softStopTime = softTime == 0 ? 0 : now + softTime;
+        stopTime = hardTime == 0 ? 0 : now + hardTime;
+    }
+
+    /**
+     * Check if there is time to search another depth.
+     * The time of the next depth is predicted from the time of the last depth times the effective branching factor,
+     * the number of nodes of the last depth divided by the number of nodes of the depth before it.
+     *
+     * @param iterationTime the time used by the last depth
+     * @param nodes the number of nodes of the last depth
+     * @param previousNodes the number of nodes of the depth before it, 0 if there is none
+     * @return boolean if the next depth should be started
+     */
+    private boolean timeForNextDepth(long iterationTime, long nodes, long previousNodes) {
+        if (softStopTime == 0) return true;
+        long now = System.currentTimeMillis();
+        if (now >= softStopTime) return false;
+
+        double branchingFactor = previousNodes == 0 ? 2.0 : nodes * 1.0 / previousNodes;
+        branchingFactor = Math.max(1.5, Math.min(branchingFactor, 8.0));
+        return now + (long) (iterationTime * branchingFactor) < stopTime;
+    }
+
+    /**
+     * Check if the search has reached the time or node limit, and stop it if it has
+     */
+    private void checkUp() {
+        long now = System.currentTimeMillis();
+        if (stopTime != 0 && now >= stopTime) {
+            /*
+             * The stop latency of a time limit is measured from the time the search should have stopped
+             */
+            stopRequestTime = System.nanoTime() - (now - stopTime) * 1000000;
+            searching = false;
+        }
+        if (nodeLimit != 0 && getSearchNodes() >= nodeLimit) {
+            requestStop();
+        }
+    }
+
+    /**
+     * Ask the search to stop, and note the time for the stop latency. Can be called from any thread.
+     */
+    public void requestStop() {
+        if (searching) {
+            stopRequestTime = System.nanoTime();
+            searching = false;
+        }
+    }
+
+    /**
+     * Measure the stop latency of the search that just returned, if it was asked to stop
+     *
+     * @return boolean if the search was asked to stop
+     */
+    private boolean measureStopLatency() {
+        if (stopRequestTime == 0) return false;
+        lastStopLatency = System.nanoTime() - stopRequestTime;
+        maxStopLatency = Math.max(maxStopLatency, lastStopLatency);
+        stopCount++;
+        stopRequestTime = 0;
+        return true;
+    }
+
+    /**
+     * Get the last and the highest stop latency as a string
+     *
+     * @return the stop latency string
+     */
+    String getStopLatency() {
+        return String.format("Stop latency: %.3f ms (max %.3f ms over %d stops)",
+                lastStopLatency / 1e6, maxStopLatency / 1e6, stopCount);
+    }
+
+    /**
+     * Copy the moves generated for the current ply
+     *
+     * @return the moves of integer format
+     */
+    int[] copyMoveList() {
+        return Arrays.copyOfRange(moveList, moveListStart[pos.comPly], moveListStart[pos.comPly + 1]);
+    }
+
+    /**
+     * Get the first legal move of the position, used when the search is stopped before the first depth is done
+     *
+     * @return the move of integer format, 0 if there are no legal moves
+     */
+    private int getFirstLegalMove() {
+        generateLegalMoves();
+        return moveListStart[pos.comPly + 1] > moveListStart[pos.comPly] ? moveList[moveListStart[pos.comPly]] : 0;
+    }
+
+    /**
+     * Clear the board variables for search
+     */
+    private void clearForSearch() {
+        /*
+         * Clear the search history and the killer moves
+         */
+        for (int i = 0; i < 13 * BOARD_SQUARES; i++) {
+            searchHistory[i] = 0;
+        }
+        for (int i = 0; i < 2 * MAX_DEPTH; i++) {
+            searchKillers[i] = 0;
+        }
+        hashProbes = 0;
+        hashHits = 0;
+        hashCuts = 0;
+        pawnHashProbes = 0;
+        pawnHashHits = 0;
+        evalHashProbes = 0;
+        evalHashHits = 0;
+        pos.comPly = 0;
+        searchbc = 0;
+        searchbcf = 0;
+        searchnodes = 0;
+    }
+
+    /**
+     * Search the current position from the start depth to the end depth
+     * @param start the start depth
+     * @param depth the end depth
+     * @return the best move of integer format
+     */
+    public int searchPosition(int start, int depth) {
+        /*
+         * While searching disable the rendering
+         */
+        searching = true;
+
+        /*
+         * Input validation
+         */
+        if (start > depth) start = depth;
+        if (start < 1) start = 1;
+        searchdepth = depth;
+        int bestMove = 0;
+        int bestScore = 0;
+        int currentDepth;
+
+        clearForSearch();
+        hashAge++;
+        stopRequestTime = 0;
+        searchStart = System.currentTimeMillis();
+        startHelpers();
+
+        long previousNodes = 0;
+
+        /*
+         * Loop through the different depths and search them
+         */
+        for (currentDepth = start; currentDepth <= searchdepth; currentDepth++) {
+            if (!searching) break; // Stop searching
+
+            /*
+             * Get the best possible score and print the primary variation to the screen
+             */
+            long iterationStart = System.currentTimeMillis();
+            long iterationNodes = searchnodes;
+
+            /*
+             * Aspiration windows: the score is expected to be close to the score of the last depth, so search
+             * with a narrow window around it, which cuts off more of the tree. If the score falls outside the window
+             * it is searched again, with the window widened on the failing side, twice as much every time.
+             */
+            int window = ASPIRATION_WINDOW;
+            int alpha = -INF;
+            int beta = INF;
+            if (currentDepth > start && currentDepth >= ASPIRATION_MIN_DEPTH) {
+                alpha = Math.max(bestScore - window, -INF);
+                beta = Math.min(bestScore + window, INF);
+            }
+            int researches = 0;
+            int score = alphaBeta(alpha, beta, currentDepth, true);
+            while (searching && (score <= alpha && alpha > -INF || score >= beta && beta < INF)) {
+                window *= 2;
+                if (score <= alpha) {
+                    alpha = Math.max(alpha - window, -INF);
+                } else {
+                    beta = Math.min(beta + window, INF);
+                }
+                researches++;
+                score = alphaBeta(alpha, beta, currentDepth, true);
+            }
+
+            /*
+             * The result of a stopped depth is incomplete, so the best move of the last finished depth is used
+             */
+            if (!searching) break;
+            bestScore = score;
+            searchScore = score;
+            bestMove = getPVMove();
+            primaryVariationLength = getPvLine(currentDepth);
+            iterationNodes = searchnodes - iterationNodes;
+            boolean nextDepth = timeForNextDepth(System.currentTimeMillis() - iterationStart, iterationNodes, previousNodes);
+            previousNodes = iterationNodes;
+            if (uciMode) {
+                printUciInfo(currentDepth, bestScore);
+                if (!nextDepth) break;
+                continue;
+            }
+            String line = "D" + currentDepth;
+
+            /*
+             * If the score is a mate score, show the number of moves until mate
+             */
+            if (Math.abs(bestScore) >= MATE_SCORE - MAX_DEPTH) {
+                line += " Mate in " + (MATE_SCORE - Math.abs(bestScore)) + " nodes: " + getSearchNodes();
+            } else {
+                line += " Score: " + bestScore + " nodes: " + getSearchNodes();
+            }
+            double rat = searchbcf * 1.0 / searchbc;
+            int pct = (int) Math.round(rat * 100.0);
+            line += " Ordering: " + pct + "%";
+            line += " Hash: " + getHashHitRate() + "%";
+            line += " Pawn hash: " + (pawnHashProbes == 0 ? 0 : Math.round(pawnHashHits * 100.0 / pawnHashProbes)) + "%";
+            line += " Eval hash: " + (evalHashProbes == 0 ? 0 : Math.round(evalHashHits * 100.0 / evalHashProbes)) + "%";
+            line += " Researches: " + researches;
+            line += " Best: ";
+            for (int c = 0; c < primaryVariationLength; c++) {
+                line += " " + pos.moveToString(primaryVariation[c]);
+            }
+            if (printSearch) System.out.println(line);
+            if (!nextDepth) break;
+        }
+
+        stopHelpers();
+
+        /*
+         * If the search was stopped before the first depth was done, use the hash move of a previous search,
+         * or any legal move
+         */
+        if (bestMove == 0) bestMove = getPVMove();
+        if (bestMove == 0) bestMove = getFirstLegalMove();
+        if (measureStopLatency() && uciMode) System.out.println("info string " + getStopLatency());
+
+        searching = false;
+        return bestMove;
+    }
+
+    /**
+     * Start the helper threads for the lazy SMP search.
+     * Each helper searches the current position in its own thread, and the helpers only communicate with
+     * the main search through the shared transposition table.
+     */
+    private void startHelpers() {
+        if (helpers.length != threads - 1) {
+            helpers = new Searcher[threads - 1];
+            for (int i = 0; i < helpers.length; i++) {
+                helpers[i] = new Searcher(this);
+            }
+        }
+
+        helperThreads = new Thread[helpers.length];
+        for (int i = 0; i < helpers.length; i++) {
+            final Searcher helper = helpers[i];
+            final int id = i + 1;
+            helper.pos.copyFrom(pos);
+            helper.copyTables(this);
+            helper.searching = true;
+            helperThreads[i] = new Thread() {
+                public void run() {
+                    helper.helperSearch(id);
+                }
+            };
+            helperThreads[i].start();
+        }
+    }
+
+    /**
+     * Stop the helper threads and wait for them to finish
+     */
+    private void stopHelpers() {
+        for (int i = 0; i < helperThreads.length; i++) {
+            helpers[i].searching = false;
+        }
+        for (int i = 0; i < helperThreads.length; i++) {
+            try {
+                helperThreads[i].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        helperThreads = new Thread[0];
+    }
+
+    /**
+     * Iterative deepening search for a helper thread, runs until the main search stops it.
+     * Every other helper starts one depth deeper, so that the helpers spread out over different depths
+     * and fill the transposition table with entries the main search has not reached yet.
+     *
+     * @param id the helper number
+     */
+    private void helperSearch(int id) {
+        clearForSearch();
+        for (int currentDepth = 1 + (id & 1); currentDepth < MAX_DEPTH && searching; currentDepth++) {
+            alphaBeta(-INF, INF, currentDepth, true);
+        }
+    }
+
+    /**
+     * Get the number of nodes searched by the main search and all the helpers
+     *
+     * @return the number of nodes
+     */
+    public long getSearchNodes() {
+        long nodes = searchnodes;
+        for (int i = 0; i < helpers.length; i++) {
+            nodes += helpers[i].searchnodes;
+        }
+        return nodes;
+    }
+
+    /**
+     * Print a UCI info line for a finished depth
+     *
+     * @param depth the depth
+     * @param score the score of the position for the side to move
+     */
+    private void printUciInfo(int depth, int score) {
+        long time = System.currentTimeMillis() - searchStart;
+        long nodes = getSearchNodes();
+        String line = "info depth " + depth;
+
+        /*
+         * Mate scores are reported in moves, not ply, and negative if the side to move is getting mated
+         */
+        if (Math.abs(score) >= MATE_SCORE - MAX_DEPTH) {
+            int plies = MATE_SCORE - Math.abs(score);
+            line += " score mate " + (score > 0 ? (plies + 1) / 2 : -(plies / 2));
+        } else {
+            line += " score cp " + score;
+        }
+        line += " nodes " + nodes + " nps " + (nodes * 1000 / Math.max(time, 1)) + " time " + time + " hashfull " + getHashFull() + " pv";
+        for (int c = 0; c < primaryVariationLength; c++) {
+            line += " " + moveToUci(primaryVariation[c]);
+        }
+        System.out.println(line);
+    }
+
+    /**
+     * Simple heuristic function for evaluating the position
+     *
+     * @return the evaluation score
+     */
+    int evaluatePosition() {
+        /*
+         * Scores for black are subtracted and scores for white are added
+         * Start by adding together the values the pieces get when they are on a spesific square,
+         * which are kept up to date as the pieces move. The midgame and endgame scores are added together packed.
+         */
+        int score = pos.positional[WHITE] - pos.positional[BLACK];
+
+        /*
+         * Add an extra bonus for the bishop pair
+         */
+        if (pos.numPieces[wB] > 1) {
+            score += makeScore(scoreBishopPair, scoreBishopPair);
+        }
+        if (pos.numPieces[bB] > 1) {
+            score -= makeScore(scoreBishopPair, scoreBishopPair);
+        }
+
+        /*
+         * Add the pawn structure score from the pawn hash table
+         */
+        score += probePawnScore();
+
+        /*
+         * Add the material scores, and the pawn shields of the kings to the midgame score only
+         */
+        int mat = pos.material[WHITE] - pos.material[BLACK];
+        int mid = mat + midScore(score) + evaluateShield(WHITE) - evaluateShield(BLACK);
+        int end = mat + endScore(score);
+
+        /*
+         * Blend the midgame and endgame scores by the game phase. Promotions can bring the phase over the total.
+         */
+        int p = Math.min(pos.phase, PHASE_TOTAL);
+        int total = (mid * p + end * (PHASE_TOTAL - p)) / PHASE_TOTAL;
+
+        return pos.side == WHITE ? total : -total;
+    }
+
+    /**
+     * Get the static evaluation of the position from the evaluation cache,
+     * evaluating the position and storing the evaluation if it is not found
+     *
+     * @return the evaluation score for the side to move
+     */
+    private int evaluate() {
+        if (evalHashKeys == null) return evaluatePosition();
+
+        int index = (int) (pos.posKey & evalHashMask);
+        long data = evalHashData[index];
+        evalHashProbes++;
+        if ((evalHashKeys[index] ^ data) == pos.posKey) {
+            evalHashHits++;
+            return (int) data;
+        }
+
+        int score = evaluatePosition();
+        data = score & 0xFFFFFFFFL;
+        evalHashKeys[index] = pos.posKey ^ data;
+        evalHashData[index] = data;
+        return score;
+    }
+
+    /**
+     * Allocate the evaluation cache, or turn it off
+     *
+     * @param megabytes the size of the table in megabytes, 0 to turn it off
+     */
+    void initEvalHash(int megabytes) {
+        if (megabytes <= 0) {
+            evalHashKeys = null;
+            evalHashData = null;
+            evalHashMask = 0;
+            return;
+        }
+        long entries = (long) megabytes * 1024 * 1024 / HASH_ENTRY_BYTES;
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        evalHashKeys = new long[size];
+        evalHashData = new long[size];
+        evalHashMask = size - 1;
+    }
+
+    /**
+     * Get the pawn structure score from the pawn hash table,
+     * evaluating the pawns and storing the score if the pawn structure is not found
+     *
+     * @return the packed midgame and endgame pawn score for white
+     */
+    private int probePawnScore() {
+        int index = (int) (pos.pawnKey & (PAWN_HASH_ENTRIES - 1));
+        long data = pawnHashData[index];
+        pawnHashProbes++;
+        if ((pawnHashKeys[index] ^ data) == pos.pawnKey) {
+            pawnHashHits++;
+            return (int) data;
+        }
+
+        int score = evaluatePawns();
+        data = score & 0xFFFFFFFFL;
+        pawnHashKeys[index] = pos.pawnKey ^ data;
+        pawnHashData[index] = data;
+        return score;
+    }
+
+    /**
+     * Evaluate the pawn structure
+     *
+     * @return the packed midgame and endgame pawn score for white
+     */
+    private int evaluatePawns() {
+        return evaluatePawns(WHITE) - evaluatePawns(BLACK);
+    }
+
+    /**
+     * Evaluate the pawns of one side
+     *
+     * @param color the side to evaluate
+     * @return the packed midgame and endgame pawn score for the side
+     */
+    private int evaluatePawns(int color) {
+        long own = pos.pieceBitboards[color == WHITE ? wP : bP];
+        long enemy = pos.pieceBitboards[color == WHITE ? bP : wP];
+        int score = 0;
+
+        for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+            int sq = Long.numberOfTrailingZeros(pawns);
+            int file = sq & 7;
+            int rank = color == WHITE ? sq >> 3 : 7 - (sq >> 3);
+            long front = Bitboards.passedMasks[color * 64 + sq];
+
+            /*
+             * A pawn with an own pawn in front of it on the same file is doubled, only the front pawn can be passed
+             */
+            if ((front & Bitboards.fileMasks[file] & own) != 0) {
+                score += makeScore(scorePawnDoubled, scorePawnDoubled);
+            } else if ((front & enemy) == 0) {
+                score += makeScore(scorePawnPassed[rank], scorePawnPassedEnd[rank]);
+            }
+
+            /*
+             * An isolated pawn has no own pawns on the files next to it. A backward pawn has own pawns next to it,
+             * but they are all in front of it, and an enemy pawn controls the square in front of it
+             */
+            if ((Bitboards.adjacentFileMasks[file] & own) == 0) {
+                score += makeScore(scorePawnIsolated, scorePawnIsolated);
+            } else if ((Bitboards.supportMasks[color * 64 + sq] & own) == 0) {
+                int stop = color == WHITE ? sq + 8 : sq - 8;
+                if ((Bitboards.pawnAttacks[color * 64 + stop] & enemy) != 0) {
+                    score += makeScore(scorePawnBackward, scorePawnBackward);
+                }
+            }
+        }
+
+        return score;
+    }
+
+    /**
+     * Evaluate the pawn shield of a king, the own pawns in front of it if it is on its first two ranks.
+     * The king moves far more often than the pawns, so the shield is not cached in the pawn hash table.
+     *
+     * @param color the side of the king
+     * @return the shield score for the side
+     */
+    private int evaluateShield(int color) {
+        int king = getSquare64[pos.pieceListSquare[(color == WHITE ? wK : bK) * 10]];
+        int kingRank = color == WHITE ? king >> 3 : 7 - (king >> 3);
+        if (kingRank >= 2) return 0;
+        long own = pos.pieceBitboards[color == WHITE ? wP : bP];
+        return scorePawnShield * Long.bitCount(Bitboards.shieldMasks[color * 64 + king] & own);
+    }
+
+    /**
+     * Get the primary variation move in this position from the transposition table
+     *
+     * @return move of integer format
+     */
+    private int getPVMove() {
+        int index = (int) (pos.posKey & hashMask) * HASH_BUCKET_ENTRIES;
+
+        /*
+         * If an entry of the bucket has the same position key as this one,
+         * we know it is written from this position
+         */
+        for (int i = index; i < index + HASH_BUCKET_ENTRIES; i++) {
+            long data = hashData[i];
+            if ((hashKeys[i] ^ data) == pos.posKey && getHashFlag(data) != HFNONE) {
+                return getHashMove(data);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Set up the primary variation line so that we can read it from the primaary variation array
+     *
+     * @param depth the depth to search for a variation up to
+     * @return the number of moves found in the primary variation
+     */
+    private int getPvLine(int depth) {
+        int move = getPVMove();
+        int count = 0;
+        while (move != 0 && count < depth) {
+            /*
+             * Loop through all the moves registered in the primary variation, and attempt it,
+             * Then update the primary variation and get the next move
+             */
+            if (moveExists(move)) {
+                pos.makeMove(move);
+                primaryVariation[count++] = move;
+                move = getPVMove();
+            } else {
+                break;
+            }
+        }
+
+        /*
+         * Afterwards revert the number of moves made int the variation
+         */
+        while (pos.comPly > 0) {
+            pos.revertMove();
+        }
+
+        return count;
+    }
+
+    /**
+     * Check if a move exists
+     * @param move move of integer format to check existence of
+     * @return boolean representing the existence
+     */
+    private boolean moveExists(int move) {
+        /*
+         * Generate the moves and check if the move exists in the list, and the move is legal
+         */
+        generateLegalMoves();
+        for (int i = moveListStart[pos.comPly]; i < moveListStart[pos.comPly + 1]; i++) {
+            if (move == moveList[i]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Attempt to execute a move from an input string
+     * @param move move string in the format a1h8p where the 4 first chars represent the from and to square, and the 5th char represents a promotion piece
+     * @return boolean if the execution succeeded
+     */
+    public boolean attemptMove(String move) {
+        /*
+         * Get the ranks and files from the string
+         */
+        int from_file = move.charAt(0) - 'a';
+        int from_rank = move.charAt(1) - '1';
+        int to_file = move.charAt(2) - 'a';
+        int to_rank = move.charAt(3) - '1';
+
+        /*
+         * Check if the squares are on the board
+         */
+        if (from_file > 7 || to_file > 7 || from_rank > 7 || to_rank > 7 || from_file < 0 || to_file < 0 || from_rank < 0 || to_rank < 0)
+            return false;
+
+        /*
+         * Get the from and to squares base 120
+         */
+        byte from_sq = getSquare120[from_file + from_rank * 8];
+        byte to_sq = getSquare120[to_file + to_rank * 8];
+
+        byte piece = pos.board[from_sq];
+
+        /*
+         * The target piece must be of the same side as the move
+         */
+        if (colPieces[piece] != pos.side) return false;
+
+        /*
+         * Check if the from and to squares match up with a move in the move list
+         */
+        generateMoves();
+        for (int i = moveListStart[pos.comPly]; i < moveListStart[pos.comPly + 1]; i++) {
+            int lmove = moveList[i];
+            if (getFromSq(lmove) == from_sq && getToSq(lmove) == to_sq) {
+                if ((lmove & MFLAG_PROMOTION) != 0) {
+                    /*
+                     * If the move is a promotion piece, check the last char for the promotion piece
+                     * by looping through the piece chars, and finding the piece of the right color.
+                     */
+                    for (byte c = 0; c < pieceChars.length; c++) {
+                        if (pieceChars[c] == move.charAt(4)) {
+                            int pce = c;
+                            if (colPieces[c] != pos.side) {
+                                if (pos.side == WHITE) pce = c - 6;
+                                else pce = c + 6;
+                            }
+                            /*
+                             * Create a new move with the promotion piece and return the move status,
+                             * if it is legal or not.
+                             */
+                            int newMove = getMove(getFromSq(lmove), getToSq(lmove), getCapturedPiece(lmove), pce, 0);
+                            return pos.makeMove(newMove);
+                        }
+                    }
+
+                    /*
+                     * This means the promotion char was not a valid piece char
+                     */
+                    return false;
+                }
+
+                /*
+                 * Make the move, and return the move status, if it is legal or not
+                 */
+                return pos.makeMove(lmove);
+            }
+        }
+
+        /*
+         * This means the move was not in the move list
+         */
+        return false;
+    }
+
+    /**
+     * Allocate or turn off the perft hash table
+     *
+     * @param megabytes the size of the table in megabytes, 0 turns the table off
+     */
+    void initPerftHash(int megabytes) {
+        if (megabytes <= 0) {
+            perftKeys = null;
+            perftData = null;
+            perftMask = 0;
+            return;
+        }
+        long entries = (long) megabytes * 1024 * 1024 / HASH_ENTRY_BYTES;
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        perftKeys = new long[size];
+        perftData = new long[size];
+        perftMask = size - 1;
+    }
+
+    /**
+     * Count the number of leaf nodes of the move generator to a given depth.
+     * The moves at the last depth are counted without going further down (bulk counting),
+     * and if the perft hash table is turned on, subtrees that have been counted before are looked up.
+     *
+     * @param depth the depth to count to
+     * @return the number of leaf nodes
+     */
+    long perft(int depth) {
+        int index = 0;
+        if (perftKeys != null && depth > 1) {
+            /*
+             * The entry is only valid if both the position key and the depth match
+             */
+            perftProbes++;
+            index = (int) (pos.posKey & perftMask);
+            long data = perftData[index];
+            if ((perftKeys[index] ^ data) == pos.posKey && (data & 0xFF) == depth) {
+                perftHits++;
+                return data >>> 8;
+            }
+        }
+
+        /*
+         * Only legal moves are generated, so the leaf nodes are counted without making the moves
+         */
+        generateLegalMoves();
+        if (depth == 1) return moveListStart[pos.comPly + 1] - moveListStart[pos.comPly];
+        long nodes = 0;
+        for (int i = moveListStart[pos.comPly]; i < moveListStart[pos.comPly + 1]; i++) {
+            pos.playMove(moveList[i]);
+            nodes += perft(depth - 1);
+            pos.revertMove();
+        }
+
+        if (perftKeys != null && depth > 1) {
+            long data = (nodes << 8) | depth;
+            perftKeys[index] = pos.posKey ^ data;
+            perftData[index] = data;
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Run perft on the current position and print the number of nodes and the speed
+     *
+     * @param depth the depth to count to
+     * @param divide print the number of nodes for each move at the root
+     * @return the number of leaf nodes
+     */
+    long runPerft(int depth, boolean divide) {
+        pos.comPly = 0;
+        perftProbes = 0;
+        perftHits = 0;
+        if (perftKeys != null) {
+            for (int i = 0; i < perftKeys.length; i++) {
+                perftKeys[i] = 0;
+                perftData[i] = 0;
+            }
+        }
+
+        long start = System.nanoTime();
+        long nodes = 0;
+        if (divide) {
+            /*
+             * Count each of the root moves by itself
+             */
+            generateLegalMoves();
+            for (int i = moveListStart[pos.comPly]; i < moveListStart[pos.comPly + 1]; i++) {
+                int move = moveList[i];
+                pos.playMove(move);
+                long count = depth == 1 ? 1 : perft(depth - 1);
+                pos.revertMove();
+                System.out.println(pos.moveToString(move) + ": " + count);
+                nodes += count;
+            }
+        } else {
+            nodes = perft(depth);
+        }
+        long time = System.nanoTime() - start;
+
+        String line = "Depth: " + depth + " Nodes: " + nodes + " Time: " + (time / 1000000) + " ms Nps: " + (nodes * 1000000000L / Math.max(time, 1));
+        if (perftKeys != null) {
+            line += " Hash hits: " + (perftProbes == 0 ? 0 : Math.round(perftHits * 100.0 / perftProbes)) + "%";
+        }
+        System.out.println(line);
+        return nodes;
+    }
+
+    /**
+     * Run perft on the current position in parallel and print the number of nodes and the speed.
+     * The moves of the first split depths are each counted by a separate task on a fork join pool with one
+     * worker for each search thread. A task only holds the moves from the current position, and is counted
+     * by the searcher of the worker that runs it. The workers share the perft hash table if it is turned on.
+     *
+     * @param depth the depth to count to
+     * @param split the number of depths to split into separate tasks
+     * @return the number of leaf nodes
+     */
+    long runParallelPerft(int depth, int split) {
+        pos.comPly = 0;
+        if (perftKeys != null) {
+            for (int i = 0; i < perftKeys.length; i++) {
+                perftKeys[i] = 0;
+                perftData[i] = 0;
+            }
+        }
+
+        /*
+         * Each worker thread gets its own searcher the first time it runs a task
+         */
+        final Searcher root = this;
+        ThreadLocal<Searcher> workers = new ThreadLocal<Searcher>() {
+            protected Searcher initialValue() {
+                return new Searcher(root);
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        long start = System.nanoTime();
+        long nodes = pool.invoke(new PerftTask(this, workers, new int[0], depth, split));
+        long time = System.nanoTime() - start;
+        pool.shutdown();
+
+        System.out.println("Depth: " + depth + " Nodes: " + nodes + " Time: " + (time / 1000000) + " ms Nps: " + (nodes * 1000000000L / Math.max(time, 1)) + " Threads: " + threads);
+        return nodes;
+    }
+
+    /**
+     * Inner class for the parallel perft tasks.
+     * A task is the list of moves from the root position to the position it counts. The worker running it
+     * copies the root position into its own searcher and makes the moves, then counts the leaf nodes,
+     * or forks a new task for each legal move until the split depth is reached.
+     */
+    private static class PerftTask extends RecursiveTask<Long> {
+        private final Searcher root;
+        private final ThreadLocal<Searcher> workers;
+        private final int[] moves;
+        private final int depth;
+        private final int split;
+
+        PerftTask(Searcher root, ThreadLocal<Searcher> workers, int[] moves, int depth, int split) {
+            this.root = root;
+            this.workers = workers;
+            this.moves = moves;
+            this.depth = depth;
+            this.split = split;
+        }
+
+        protected Long compute() {
+            Searcher worker = workers.get();
+            worker.pos.copyFrom(root.pos);
+            for (int move : moves) {
+                worker.pos.playMove(move);
+            }
+            worker.pos.comPly = 0;
+            if (split <= 0 || depth <= 1) {
+                return worker.perft(depth);
+            }
+
+            /*
+             * Create a task for each legal move, then fork all the tasks but the last one,
+             * count the last one in this thread, and join the others.
+             * The worker searcher is reused by the tasks run in this thread, so the moves are read first.
+             */
+            worker.generateLegalMoves();
+            int count = worker.moveListStart[1] - worker.moveListStart[0];
+            if (count == 0) return 0L;
+            PerftTask[] tasks = new PerftTask[count];
+            for (int i = 0; i < count; i++) {
+                int[] childMoves = Arrays.copyOf(moves, moves.length + 1);
+                childMoves[moves.length] = worker.moveList[worker.moveListStart[0] + i];
+                tasks[i] = new PerftTask(root, workers, childMoves, depth - 1, split - 1);
+            }
+
+            for (int i = 0; i < count - 1; i++) {
+                tasks[i].fork();
+            }
+            long nodes = tasks[count - 1].compute();
+            for (int i = count - 2; i >= 0; i--) {
+                nodes += tasks[i].join();
+            }
+            return nodes;
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.potrik.main;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * UciPonderTest.java
+ *
+ * Runs the headless engine with the UCI protocol over piped standard input and output,
+ * and checks that a ponder search keeps its time limit after ponderhit.
+ */
+public class UciPonderTest {
+    /*
+     * The move time of the search, and how much later than the hard limit the best move may come
+     */
+    private static final long MOVE_TIME = 300;
+    private static final long TOLERANCE = 200;
+
+    private InputStream originalIn;
+    private PrintStream originalOut;
+    private PipedOutputStream commands;
+    private BlockingQueue<String> lines;
+    private Thread engine;
+
+    @Before
+    public void setup() throws IOException {
+        originalIn = System.in;
+        originalOut = System.out;
+
+        /*
+         * The commands are written to a pipe read by the engine, and the output is split into lines
+         */
+        PipedInputStream input = new PipedInputStream();
+        commands = new PipedOutputStream(input);
+        lines = new LinkedBlockingQueue<>();
+        System.setIn(input);
+        System.setOut(new PrintStream(new OutputStream() {
+            private final StringBuilder line = new StringBuilder();
+
+            public synchronized void write(int b) {
+                if (b == '\n') {
+                    lines.add(line.toString().trim());
+                    line.setLength(0);
+                } else {
+                    line.append((char) b);
+                }
+            }
+        }, true));
+
+        engine = new Thread() {
+            public void run() {
+                Chess.main(new String[]{"nogui"});
+            }
+        };
+        engine.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        send("quit");
+        engine.join(5000);
+        commands.close();
+        System.setIn(originalIn);
+        System.setOut(originalOut);
+    }
+
+    @Test
+    public void ponderhitKeepsTheHardLimit() throws Exception {
+        send("uci");
+        assertNotNull("No uciok", waitFor("uciok", 5000));
+        send("isready");
+        assertNotNull("No readyok", waitFor("readyok", 5000));
+
+        /*
+         * A ponder search has no time limit until ponderhit
+         */
+        send("position startpos moves e2e4");
+        send("go ponder movetime " + MOVE_TIME);
+        assertNull("The ponder search reported a best move before ponderhit", waitFor("bestmove", MOVE_TIME * 2));
+
+        long start = System.currentTimeMillis();
+        send("ponderhit");
+        assertNotNull("No best move after ponderhit", waitFor("bestmove", MOVE_TIME + TOLERANCE + 5000));
+        long time = System.currentTimeMillis() - start;
+        assertTrue("The best move came " + time + " ms after ponderhit", time <= MOVE_TIME + TOLERANCE);
+    }
+
+    /**
+     * Send a command to the engine
+     *
+     * @param command the command
+     */
+    private void send(String command) throws IOException {
+        commands.write((command + "\n").getBytes("UTF-8"));
+        commands.flush();
+    }
+
+    /**
+     * Wait for an output line starting with a prefix, skipping the lines before it
+     *
+     * @param prefix the start of the line
+     * @param timeout the time to wait in milliseconds
+     * @return the line, null if it did not come in time
+     */
+    private String waitFor(String prefix, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        long left;
+        while ((left = end - System.currentTimeMillis()) > 0) {
+            String line = lines.poll(left, TimeUnit.MILLISECONDS);
+            if (line != null && line.startsWith(prefix)) return line;
+        }
+        return null;
+    }
+}